@@ -0,0 +1,107 @@
+package com.elbouch.auto.service;
+
+import com.elbouch.auto.ElBouchBackendApplication;
+import com.elbouch.auto.entity.Product;
+import com.elbouch.auto.synthetic.SyntheticCatalogue;
+import com.elbouch.auto.util.SpecFilter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Page;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The /api/v1/products listing through ProductService, against the application started on an in-memory H2
+ * with the "synthetic" profile: plain and category listings and spec filters go through SQL,
+ * full-text queries through the search index. Deep pages (page=40) show what OFFSET costs.
+ * Allocation per call comes from -prof gc; the heap retained by the loaded application (caches and
+ * in-memory indexes) is printed after setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProductSearchBenchmark {
+
+    private static final int PER_PAGE = 12;
+
+    @Param({"1000", "10000", "100000"})
+    int catalogueSize;
+
+    @Param({"1", "40"})
+    int page;
+
+    private ConfigurableApplicationContext context;
+    private ProductService products;
+    private String rootCategory;
+    private List<SpecFilter> specFilters;
+
+    @Setup
+    public void setUp() {
+        // arguments, not builder properties, so they override application.yml
+        context = new SpringApplicationBuilder(ElBouchBackendApplication.class).run(
+                "--spring.profiles.active=synthetic",
+                "--app.synthetic.products=" + catalogueSize,
+                "--server.port=0",
+                "--spring.main.banner-mode=off",
+                "--spring.datasource.url=jdbc:h2:mem:bench;DB_CLOSE_DELAY=-1;MODE=PostgreSQL",
+                "--app.uploads-dir=bench-uploads",
+                "--logging.level.root=WARN");
+        awaitRelatedRefresh();
+        System.out.printf("%n%d products: %d MB heap retained after load%n", catalogueSize, retainedHeap() / (1024 * 1024));
+        products = context.getBean(ProductService.class);
+        rootCategory = new SyntheticCatalogue().categories.get(0).getSlug();
+        specFilters = List.of(new SpecFilter("couleur", Set.of("noir"), null, null), new SpecFilter("poids", null, 1.0, 2.5));
+    }
+
+    // the related lists are recomputed in the background after seeding, which would compete with the measurement
+    private void awaitRelatedRefresh() {
+        MeterRegistry registry = context.getBean(MeterRegistry.class);
+        long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(30);
+        while (registry.get("catalogue.index.pending").tag("index", "related").gauge().value() > 0 && System.nanoTime() < deadline) {
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private static long retainedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Page<Product> listing() {
+        return products.search(null, null, null, true, null, null, page, PER_PAGE);
+    }
+
+    @Benchmark
+    public Page<Product> categorySubtree() {
+        return products.search(null, rootCategory, null, true, null, null, page, PER_PAGE);
+    }
+
+    @Benchmark
+    public Page<Product> specFilters() {
+        return products.search(null, null, null, true, null, specFilters, page, PER_PAGE);
+    }
+
+    @Benchmark
+    public Page<Product> fullText() {
+        return products.search("housse cuir", null, null, true, null, null, page, PER_PAGE);
+    }
+}
@@ -0,0 +1,61 @@
+package com.elbouch.auto.service;
+
+import com.elbouch.auto.dto.ProductEventDto;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one broadcast on the publishing thread: enqueueing for every subscriber, coalescing per product
+ * and scheduling the drains. Subscribers accept and discard every event, like clients that keep up.
+ * How long the event then takes to reach the clients is SseDeliveryLagBenchmark.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SseBroadcastBenchmark {
+
+    private static final int PRODUCTS = 100;
+
+    @Param({"10", "100", "1000", "10000"})
+    int subscribers;
+
+    private SseService sse;
+    private ProductEventDto[] events;
+    private int next;
+
+    static class DiscardingEmitter extends SseEmitter {
+        DiscardingEmitter() {
+            super(0L);
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) {
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        sse = new SseService(64, 3600, 1024);
+        for (int i = 0; i < subscribers; i++) sse.subscribe(new DiscardingEmitter(), null);
+        events = new ProductEventDto[PRODUCTS];
+        for (int i = 0; i < PRODUCTS; i++) {
+            events[i] = new ProductEventDto("product.updated", "id-" + i, "produit-" + i, 0L);
+        }
+    }
+
+    @Benchmark
+    public void broadcast() {
+        sse.broadcast(events[next]);
+        next = (next + 1) % PRODUCTS;
+    }
+
+    @TearDown
+    public void tearDown() {
+        sse.shutdown();
+    }
+}
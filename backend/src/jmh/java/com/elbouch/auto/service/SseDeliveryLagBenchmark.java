@@ -0,0 +1,84 @@
+package com.elbouch.auto.service;
+
+import com.elbouch.auto.dto.ProductEventDto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Delivery lag: time from broadcast until every subscriber has received the event, i.e. the slowest client.
+ * Emitters serialize the event to JSON like a response would, then block for sendMicros, like a socket
+ * write to a client on a slow network (0 = a client that keeps up).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SseDeliveryLagBenchmark {
+
+    private static final int PRODUCTS = 100;
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    @Param({"100", "1000", "10000"})
+    int subscribers;
+
+    @Param({"0", "500"})
+    long sendMicros;
+
+    private SseService sse;
+    private ProductEventDto[] events;
+    private int next;
+    private volatile CountDownLatch pending;
+
+    class ReceivingEmitter extends SseEmitter {
+        ReceivingEmitter() {
+            super(0L);
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            boolean event = false;
+            for (var item : builder.build()) {
+                if (item.getData() instanceof ProductEventDto) {
+                    JSON.writeValueAsBytes(item.getData());
+                    event = true;
+                }
+            }
+            if (sendMicros > 0) LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(sendMicros));
+            if (event) pending.countDown();
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        sse = new SseService(64, 3600, 1024);
+        for (int i = 0; i < subscribers; i++) sse.subscribe(new ReceivingEmitter(), null);
+        events = new ProductEventDto[PRODUCTS];
+        for (int i = 0; i < PRODUCTS; i++) {
+            events[i] = new ProductEventDto("product.updated", "id-" + i, "produit-" + i, 0L);
+        }
+    }
+
+    @Benchmark
+    public void publishToLastReceipt() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(subscribers);
+        pending = latch;
+        sse.broadcast(events[next]);
+        next = (next + 1) % PRODUCTS;
+        if (!latch.await(30, TimeUnit.SECONDS)) {
+            throw new IllegalStateException(latch.getCount() + " subscribers never received the event");
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        sse.shutdown();
+    }
+}
@@ -0,0 +1,48 @@
+package com.elbouch.auto.util;
+
+import com.elbouch.auto.dto.ProductDto;
+import com.elbouch.auto.synthetic.SyntheticCatalogue;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/** Product specs parsed on every DTO mapping and serialized on every write. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonUtilsBenchmark {
+
+    @Param({"100", "10000"})
+    int catalogueSize;
+
+    private List<Map<String, Object>> specs;
+    private List<String> specsJson;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        specs = new SyntheticCatalogue().products(catalogueSize).stream().map(ProductDto::specs).toList();
+        specsJson = specs.stream().map(JsonUtils::toJson).toList();
+    }
+
+    @Benchmark
+    public Map<String, Object> toMap() {
+        return JsonUtils.toMap(specsJson.get(next()));
+    }
+
+    @Benchmark
+    public String toJson() {
+        return JsonUtils.toJson(specs.get(next()));
+    }
+
+    private int next() {
+        int i = next;
+        next = (i + 1) % catalogueSize;
+        return i;
+    }
+}
@@ -0,0 +1,61 @@
+package com.elbouch.auto.util;
+
+import com.elbouch.auto.dto.ProductDto;
+import com.elbouch.auto.entity.Category;
+import com.elbouch.auto.entity.Product;
+import com.elbouch.auto.entity.Tag;
+import com.elbouch.auto.synthetic.SyntheticCatalogue;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/** Entity to DTO for every API read, DTO to entity for every write; products are taken in turn from the catalogue. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MapperBenchmark {
+
+    @Param({"100", "10000"})
+    int catalogueSize;
+
+    private List<Product> products;
+    private List<ProductDto> dtos;
+    private final Map<UUID, Category> categoriesById = new HashMap<>();
+    private final Map<String, Tag> tagsBySlug = new HashMap<>();
+    private int next;
+
+    @Setup
+    public void setUp() {
+        SyntheticCatalogue catalogue = new SyntheticCatalogue();
+        Map<String, UUID> idsBySlug = new HashMap<>();
+        catalogue.categories.forEach(c -> {
+            idsBySlug.put(c.getSlug(), c.getId());
+            categoriesById.put(c.getId(), c);
+        });
+        catalogue.tags.forEach(t -> tagsBySlug.put(t.getSlug(), t));
+        products = catalogue.entities(catalogueSize);
+        dtos = catalogue.products(catalogueSize).stream().map(dto -> SyntheticCatalogue.withCategoryIds(dto, idsBySlug)).toList();
+    }
+
+    @Benchmark
+    public ProductDto toDto() {
+        return Mapper.toDto(products.get(next()));
+    }
+
+    @Benchmark
+    public Product applyDtoToEntity() {
+        Product p = new Product();
+        Mapper.applyDtoToEntity(dtos.get(next()), p, categoriesById, tagsBySlug);
+        return p;
+    }
+
+    private int next() {
+        int i = next;
+        next = (i + 1) % catalogueSize;
+        return i;
+    }
+}
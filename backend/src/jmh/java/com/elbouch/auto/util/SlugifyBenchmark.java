@@ -0,0 +1,36 @@
+package com.elbouch.auto.util;
+
+import com.elbouch.auto.dto.ProductDto;
+import com.elbouch.auto.synthetic.SyntheticCatalogue;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/** Product names with accents, ampersands and symbols, slugified on every write and import row. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SlugifyBenchmark {
+
+    @Param({"100", "10000"})
+    int catalogueSize;
+
+    private List<String> names;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        names = new SyntheticCatalogue().products(catalogueSize).stream().map(ProductDto::name).toList();
+    }
+
+    @Benchmark
+    public String slugify() {
+        String name = names.get(next);
+        next = (next + 1) % catalogueSize;
+        return Slugify.slugify(name);
+    }
+}
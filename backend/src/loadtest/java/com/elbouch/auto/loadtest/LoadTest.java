@@ -0,0 +1,289 @@
+package com.elbouch.auto.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Closed-model load test of the public API: {@code concurrency} clients send requests back to back, one
+ * scenario at a time (listing queries, product pages, related products), while {@code sse.connections}
+ * event streams stay open. Each scenario reports throughput and p50/p90/p99 latency, measured after a warm-up,
+ * and is checked against its budget; any budget exceeded makes the run exit with status 1.
+ * Settings come from loadtest.properties and can be overridden with key=value arguments.
+ */
+public class LoadTest {
+
+    private record Budget(double p50Ms, double p99Ms, double minRps, double maxErrorRate) {}
+
+    private record Result(String name, long requests, long errors, double rps, double p50Ms, double p90Ms, double p99Ms,
+                          double maxMs, Budget budget, List<String> violations) {}
+
+    /** Latencies in nanoseconds, one list per client thread. */
+    private static final class Samples {
+        private long[] values = new long[1024];
+        private int size;
+        long errors;
+
+        void add(long nanos) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = nanos;
+        }
+
+        static long[] merge(Collection<Samples> all) {
+            long[] merged = new long[all.stream().mapToInt(s -> s.size).sum()];
+            int at = 0;
+            for (Samples s : all) {
+                System.arraycopy(s.values, 0, merged, at, s.size);
+                at += s.size;
+            }
+            Arrays.sort(merged);
+            return merged;
+        }
+    }
+
+    private final Properties config;
+    private final URI base;
+    private final HttpClient http;
+    private final ObjectMapper json = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+    private final Random random;
+
+    LoadTest(Properties config) {
+        this.config = config;
+        this.base = URI.create(config.getProperty("base-url"));
+        this.http = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+        this.random = new Random(Long.parseLong(config.getProperty("seed", "42")));
+    }
+
+    public static void main(String[] args) throws Exception {
+        Properties config = new Properties();
+        try (InputStream in = LoadTest.class.getResourceAsStream("/loadtest.properties")) {
+            if (in != null) config.load(in);
+        }
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq > 0) config.setProperty(arg.substring(0, eq), arg.substring(eq + 1));
+        }
+        boolean passed = new LoadTest(config).run();
+        System.exit(passed ? 0 : 1);
+    }
+
+    boolean run() throws Exception {
+        List<String> queries = listingQueries();
+        List<String> slugs = sampleSlugs(intSetting("sample-products"));
+        if (slugs.isEmpty()) throw new IllegalStateException("No visible products at " + base + ", start the app with the synthetic profile");
+        System.out.printf("Target %s: %d sampled products, %d clients, %ds warm-up + %ds per scenario%n",
+                base, slugs.size(), intSetting("concurrency"), intSetting("warmup-seconds"), intSetting("duration-seconds"));
+
+        List<Result> results = new ArrayList<>();
+        List<InputStream> streams = new ArrayList<>();
+        Result sse = openStreams(intSetting("sse.connections"), streams);
+        AtomicInteger closedEarly = watch(streams);
+        try {
+            results.add(scenario("products", () -> "/api/v1/products" + queries.get(ThreadLocalRandom.current().nextInt(queries.size()))));
+            results.add(scenario("product", () -> "/api/v1/products/" + slugs.get(ThreadLocalRandom.current().nextInt(slugs.size()))));
+            results.add(scenario("related", () -> "/api/v1/products/" + slugs.get(ThreadLocalRandom.current().nextInt(slugs.size())) + "/related"));
+        } finally {
+            for (InputStream s : streams) {
+                try { s.close(); } catch (IOException ignored) {}
+            }
+        }
+        // streams the server ended while the scenarios ran count as errors of the SSE scenario
+        results.add(0, check(sse.name(), sse.requests(), sse.errors() + closedEarly.get(), sse.rps(),
+                sse.p50Ms(), sse.p90Ms(), sse.p99Ms(), sse.maxMs()));
+
+        print(results);
+        boolean passed = results.stream().allMatch(r -> r.violations().isEmpty());
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("baseUrl", base.toString());
+        report.put("settings", new TreeMap<>(config));
+        report.put("scenarios", results);
+        report.put("passed", passed);
+        Path file = Path.of(config.getProperty("report", "loadtest-report.json")).toAbsolutePath();
+        json.writeValue(file.toFile(), report);
+        System.out.println((passed ? "PASSED" : "FAILED: budgets exceeded") + ", report written to " + file);
+        return passed;
+    }
+
+    // a fixed mix of what the storefront asks for: pages, category subtrees, tags, full-text, spec filters, facets
+    private List<String> listingQueries() throws Exception {
+        JsonNode categories = json.readTree(get("/api/v1/categories").body());
+        List<String> queries = new ArrayList<>();
+        for (int page = 1; page <= 10; page++) queries.add("?per_page=12&page=" + page);
+        for (JsonNode c : categories) queries.add("?per_page=12&category=" + encode(c.get("slug").asText()));
+        for (String tags : List.of("cuir", "noir", "cuir,noir", "carbone,rouge")) queries.add("?per_page=12&tags=" + encode(tags));
+        for (String q : List.of("housse", "jante alliage", "volant sport cuir", "eclairage led")) queries.add("?per_page=12&search=" + encode(q));
+        queries.add("?per_page=12&spec.couleur=noir");
+        queries.add("?per_page=12&spec.poids.min=1&spec.poids.max=2");
+        queries.add("?per_page=12&cursor=&with_total=1&facets=1");
+        return queries;
+    }
+
+    private List<String> sampleSlugs(int count) throws Exception {
+        List<String> slugs = new ArrayList<>();
+        String cursor = "";
+        while (slugs.size() < count * 4 && cursor != null) {
+            JsonNode page = json.readTree(get("/api/v1/products?visible=1&per_page=50&cursor=" + encode(cursor)).body());
+            page.get("data").forEach(p -> slugs.add(p.get("slug").asText()));
+            JsonNode next = page.get("meta").get("next");
+            cursor = next == null || next.isNull() ? null : next.asText();
+        }
+        Collections.shuffle(slugs, random);
+        return slugs.subList(0, Math.min(count, slugs.size()));
+    }
+
+    private Result scenario(String name, java.util.function.Supplier<String> paths) throws Exception {
+        int clients = intSetting("concurrency");
+        long warmupEnd = System.nanoTime() + TimeUnit.SECONDS.toNanos(intSetting("warmup-seconds"));
+        long end = warmupEnd + TimeUnit.SECONDS.toNanos(intSetting("duration-seconds"));
+        List<Samples> perClient = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < clients; i++) {
+                Samples samples = new Samples();
+                perClient.add(samples);
+                executor.execute(() -> {
+                    long now;
+                    while ((now = System.nanoTime()) < end) {
+                        boolean ok;
+                        try {
+                            ok = get(paths.get()).statusCode() == 200;
+                        } catch (Exception e) {
+                            ok = false;
+                        }
+                        long done = System.nanoTime();
+                        if (now < warmupEnd) continue;
+                        if (ok) samples.add(done - now); else samples.errors++;
+                    }
+                });
+            }
+        }
+        long[] latencies = Samples.merge(perClient);
+        long errors = perClient.stream().mapToLong(s -> s.errors).sum();
+        double seconds = intSetting("duration-seconds");
+        return check(name, latencies.length + errors, errors, latencies.length / seconds,
+                percentile(latencies, 0.50), percentile(latencies, 0.90), percentile(latencies, 0.99), percentile(latencies, 1.0));
+    }
+
+    // time to the response headers of each stream; throughput is streams opened per second
+    private Result openStreams(int count, List<InputStream> streams) throws Exception {
+        if (count == 0) return new Result("sse", 0, 0, 0, 0, 0, 0, 0, null, List.of());
+        HttpRequest request = HttpRequest.newBuilder(base.resolve("/api/v1/events/products"))
+                .header("Accept", "text/event-stream").GET().build();
+        List<Future<HttpResponse<InputStream>>> pending = new ArrayList<>();
+        long[] latencies = new long[count];
+        long errors = 0;
+        long started = System.nanoTime();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < count; i++) {
+                int slot = i;
+                pending.add(executor.submit(() -> {
+                    long t = System.nanoTime();
+                    HttpResponse<InputStream> response = http.send(request, HttpResponse.BodyHandlers.ofInputStream());
+                    latencies[slot] = System.nanoTime() - t;
+                    return response;
+                }));
+            }
+        }
+        double seconds = (System.nanoTime() - started) / 1e9;
+        List<Long> ok = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            try {
+                HttpResponse<InputStream> response = pending.get(i).get();
+                if (response.statusCode() == 200) {
+                    streams.add(response.body());
+                    ok.add(latencies[i]);
+                } else {
+                    response.body().close();
+                    errors++;
+                }
+            } catch (ExecutionException e) {
+                errors++;
+            }
+        }
+        long[] sorted = ok.stream().mapToLong(Long::longValue).sorted().toArray();
+        return new Result("sse", count, errors, sorted.length / seconds, percentile(sorted, 0.50), percentile(sorted, 0.90),
+                percentile(sorted, 0.99), percentile(sorted, 1.0), null, List.of());
+    }
+
+    // reads every stream to its end; an end before close() means the server dropped the subscriber
+    private AtomicInteger watch(List<InputStream> streams) {
+        AtomicInteger closedEarly = new AtomicInteger();
+        Set<InputStream> closing = ConcurrentHashMap.newKeySet();
+        for (InputStream stream : streams) {
+            Thread.ofVirtual().start(() -> {
+                byte[] buffer = new byte[1024];
+                try {
+                    while (stream.read(buffer) >= 0) {
+                        // heartbeats and product events, nothing to check
+                    }
+                    if (closing.add(stream)) closedEarly.incrementAndGet();
+                } catch (IOException ignored) {
+                    // closed by us at the end of the run
+                }
+            });
+        }
+        return closedEarly;
+    }
+
+    private Result check(String name, long requests, long errors, double rps, double p50, double p90, double p99, double max) {
+        Budget budget = budget(name);
+        List<String> violations = new ArrayList<>();
+        double errorRate = requests == 0 ? 0 : (double) errors / requests;
+        if (budget.p50Ms() > 0 && p50 > budget.p50Ms()) violations.add(String.format("p50 %.1f ms > %.1f ms", p50, budget.p50Ms()));
+        if (budget.p99Ms() > 0 && p99 > budget.p99Ms()) violations.add(String.format("p99 %.1f ms > %.1f ms", p99, budget.p99Ms()));
+        if (budget.minRps() > 0 && rps < budget.minRps()) violations.add(String.format("throughput %.1f/s < %.1f/s", rps, budget.minRps()));
+        if (errorRate > budget.maxErrorRate()) violations.add(String.format("error rate %.4f > %.4f", errorRate, budget.maxErrorRate()));
+        return new Result(name, requests, errors, rps, p50, p90, p99, max, budget, violations);
+    }
+
+    private Budget budget(String scenario) {
+        Function<String, Double> value = key -> Double.parseDouble(config.getProperty("budget." + scenario + "." + key, "0"));
+        return new Budget(value.apply("p50-ms"), value.apply("p99-ms"), value.apply("min-rps"), value.apply("max-error-rate"));
+    }
+
+    private static void print(List<Result> results) {
+        System.out.printf("%n%-10s %10s %8s %10s %9s %9s %9s %9s  %s%n", "scenario", "requests", "errors", "per sec", "p50 ms", "p90 ms", "p99 ms", "max ms", "budget");
+        for (Result r : results) {
+            System.out.printf("%-10s %10d %8d %10.1f %9.1f %9.1f %9.1f %9.1f  %s%n", r.name(), r.requests(), r.errors(), r.rps(),
+                    r.p50Ms(), r.p90Ms(), r.p99Ms(), r.maxMs(), r.violations().isEmpty() ? "ok" : String.join("; ", r.violations()));
+        }
+        System.out.println();
+    }
+
+    // nearest rank, in milliseconds
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) return 0;
+        int rank = (int) Math.ceil(p * sorted.length);
+        return sorted[Math.max(rank, 1) - 1] / 1e6;
+    }
+
+    private HttpResponse<byte[]> get(String path) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(base.resolve(path)).timeout(Duration.ofSeconds(30)).GET().build();
+        return http.send(request, HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    private int intSetting(String key) {
+        return Integer.parseInt(config.getProperty(key));
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+}
@@ -1,9 +1,54 @@
 package com.elbouch.auto.config;
 
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.boot.autoconfigure.cache.CacheManagerCustomizer;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
 @Configuration
 @EnableCaching
+@EnableConfigurationProperties(CacheConfig.CacheSpecs.class)
 public class CacheConfig {
+
+    // app.cache.specs.<cacheName>: Caffeine spec (maximumSize, expireAfterWrite, recordStats...)
+    @ConfigurationProperties(prefix = "app.cache")
+    public record CacheSpecs(Map<String, String> specs) {}
+
+    // Registered before the actuator binds cache metrics, so every configured cache publishes
+    // cache.gets / cache.evictions / cache.load.duration under /actuator/metrics
+    @Bean
+    public CacheManagerCustomizer<CaffeineCacheManager> cacheSpecsCustomizer(CacheSpecs cacheSpecs) {
+        return cacheManager -> {
+            if (cacheSpecs.specs() == null) return;
+            cacheSpecs.specs().forEach((name, spec) ->
+                    cacheManager.registerCustomCache(name, Caffeine.from(spec).build()));
+        };
+    }
+
+    // Micrometer only reports load time for LoadingCache; @Cacheable(sync = true) loads through
+    // Cache.get(key, loader) on a plain cache, so expose Caffeine's load stats here
+    @Bean
+    public MeterBinder cacheLoadMetrics(CacheManager cacheManager) {
+        return registry -> cacheManager.getCacheNames().forEach(name -> {
+            if (!(cacheManager.getCache(name) instanceof CaffeineCache cache)) return;
+            var nativeCache = cache.getNativeCache();
+            FunctionTimer.builder("cache.load.duration", nativeCache,
+                            c -> c.stats().loadCount(),
+                            c -> c.stats().totalLoadTime(), TimeUnit.NANOSECONDS)
+                    .tag("cache", name)
+                    .description("Time spent loading values into the cache on a miss")
+                    .register(registry);
+        });
+    }
 }
@@ -0,0 +1,31 @@
+package com.elbouch.auto.config;
+
+import com.elbouch.auto.service.ClusterBus;
+import com.elbouch.auto.service.InProcessClusterBus;
+import com.elbouch.auto.service.PostgresClusterBus;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+
+// app.cluster.bus: local (single node, default) or postgres (LISTEN/NOTIFY on the application database)
+@Configuration
+public class ClusterConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "app.cluster.bus", havingValue = "postgres")
+    public ClusterBus postgresClusterBus(DataSource dataSource, DataSourceProperties properties, ObjectMapper mapper,
+                                         @Value("${app.cluster.channel:catalogue_changes}") String channel) {
+        return new PostgresClusterBus(dataSource, properties, mapper, channel);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "app.cluster.bus", havingValue = "local", matchIfMissing = true)
+    public ClusterBus inProcessClusterBus() {
+        return new InProcessClusterBus();
+    }
+}
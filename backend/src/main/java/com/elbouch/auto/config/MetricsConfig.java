@@ -0,0 +1,91 @@
+package com.elbouch.auto.config;
+
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.hibernate.stat.spi.StatisticsFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+
+/**
+ * Custom metrics, all on /actuator/prometheus: @Timed service methods (catalogue.*), SQL statements and
+ * rows per request, and the gauges/counters the services bind themselves (MeterBinder).
+ * A request going over app.sql.warn-threshold statements, typically an N+1 from lazy loading, is also printed
+ * (every request with app.sql.log-requests).
+ * The SQL counts come from Hibernate statistics, always on; app.sql.statistics adds the detailed per entity
+ * and per query ones (off in the prod profile).
+ */
+@Configuration
+public class MetricsConfig {
+
+    // a few fixed buckets: a growing statement count per request is what an N+1 looks like
+    private static final double[] STATEMENT_BUCKETS = {1, 2, 3, 5, 10, 20, 50, 100};
+    private static final double[] ROW_BUCKETS = {1, 10, 50, 100, 500, 1000, 5000};
+
+    @Bean
+    public TimedAspect timedAspect(MeterRegistry registry) {
+        return new TimedAspect(registry);
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer requestSqlStatistics(@Value("${app.sql.statistics:false}") boolean detailed) {
+        return properties -> {
+            properties.put("hibernate.generate_statistics", true);
+            properties.put("hibernate.stats.factory", (StatisticsFactory) sessionFactory -> new RequestSqlStatistics(sessionFactory, detailed));
+        };
+    }
+
+    // Tagged like http.server.requests, so statements per request line up with its latency.
+    // Async requests (SSE, exports) only count the work done before the response is handed off.
+    @Bean
+    public FilterRegistrationBean<OncePerRequestFilter> requestSqlMetrics(MeterRegistry registry,
+                                                                          @Value("${app.sql.warn-threshold:20}") int warnThreshold,
+                                                                          @Value("${app.sql.log-requests:false}") boolean logRequests) {
+        OncePerRequestFilter filter = new OncePerRequestFilter() {
+            @Override
+            protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+                    throws ServletException, IOException {
+                RequestSqlStatistics.begin();
+                try {
+                    chain.doFilter(request, response);
+                } finally {
+                    RequestSqlStatistics.Counts counts = RequestSqlStatistics.end();
+                    Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+                    Tags tags = Tags.of("method", request.getMethod(), "uri", pattern == null ? "UNKNOWN" : pattern.toString());
+                    DistributionSummary.builder("http.server.requests.sql.statements").baseUnit("statements")
+                            .description("JDBC statements prepared while handling a request")
+                            .serviceLevelObjectives(STATEMENT_BUCKETS)
+                            .tags(tags).register(registry).record(counts.statements());
+                    DistributionSummary.builder("http.server.requests.sql.rows").baseUnit("rows")
+                            .description("Rows returned by HQL/criteria queries while handling a request")
+                            .serviceLevelObjectives(ROW_BUCKETS)
+                            .tags(tags).register(registry).record(counts.rows());
+                    boolean over = warnThreshold >= 0 && counts.statements() > warnThreshold;
+                    if (over || logRequests) {
+                        String query = request.getQueryString();
+                        String line = "SQL " + request.getMethod() + " " + request.getRequestURI() + (query == null ? "" : "?" + query)
+                                + ": " + counts.statements() + " statements, " + counts.rows() + " rows";
+                        if (over) {
+                            System.err.println(line + ", over the threshold of " + warnThreshold);
+                        } else {
+                            System.out.println(line);
+                        }
+                    }
+                }
+            }
+        };
+        return new FilterRegistrationBean<>(filter);
+    }
+}
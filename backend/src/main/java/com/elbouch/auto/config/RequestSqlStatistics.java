@@ -0,0 +1,158 @@
+package com.elbouch.auto.config;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.metamodel.model.domain.NavigableRole;
+import org.hibernate.stat.internal.StatisticsImpl;
+
+/**
+ * Hibernate statistics that also count, for the thread between {@link #begin()} and {@link #end()},
+ * the JDBC statements prepared and the rows returned by queries. Lazy loads count as statements;
+ * rows only cover HQL/criteria queries. Work on other threads (index rebuilds, SSE senders) is not attributed.
+ * Scopes nest: a test counting around a MockMvc call also sees what the request filter counts.
+ * Without {@code detailed} only the global counters are kept: the per entity, collection, query and cache
+ * region statistics, looked up by name on every call, are skipped, which keeps the counting cheap in production.
+ */
+public class RequestSqlStatistics extends StatisticsImpl {
+
+    private static final long serialVersionUID = 1L;
+
+    /** Statements and query rows of one request. */
+    public static final class Counts {
+        private final Counts outer;
+        private long statements;
+        private long rows;
+
+        private Counts(Counts outer) {
+            this.outer = outer;
+        }
+
+        public long statements() {
+            return statements;
+        }
+
+        public long rows() {
+            return rows;
+        }
+    }
+
+    private static final ThreadLocal<Counts> CURRENT = new ThreadLocal<>();
+
+    private final boolean detailed;
+
+    public RequestSqlStatistics(SessionFactoryImplementor sessionFactory, boolean detailed) {
+        super(sessionFactory);
+        this.detailed = detailed;
+    }
+
+    public static void begin() {
+        CURRENT.set(new Counts(CURRENT.get()));
+    }
+
+    public static Counts end() {
+        Counts counts = CURRENT.get();
+        if (counts == null || counts.outer == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(counts.outer);
+        }
+        return counts;
+    }
+
+    @Override
+    public void prepareStatement() {
+        super.prepareStatement();
+        for (Counts counts = CURRENT.get(); counts != null; counts = counts.outer) counts.statements++;
+    }
+
+    @Override
+    public void queryExecuted(String hql, int rows, long time) {
+        if (detailed) super.queryExecuted(hql, rows, time);
+        for (Counts counts = CURRENT.get(); counts != null; counts = counts.outer) counts.rows += rows;
+    }
+
+    // per-name statistics, only kept when detailed
+
+    @Override
+    public void loadEntity(String entityName) { if (detailed) super.loadEntity(entityName); }
+
+    @Override
+    public void fetchEntity(String entityName) { if (detailed) super.fetchEntity(entityName); }
+
+    @Override
+    public void updateEntity(String entityName) { if (detailed) super.updateEntity(entityName); }
+
+    @Override
+    public void insertEntity(String entityName) { if (detailed) super.insertEntity(entityName); }
+
+    @Override
+    public void deleteEntity(String entityName) { if (detailed) super.deleteEntity(entityName); }
+
+    @Override
+    public void optimisticFailure(String entityName) { if (detailed) super.optimisticFailure(entityName); }
+
+    @Override
+    public void entityCachePut(NavigableRole role, String region) { if (detailed) super.entityCachePut(role, region); }
+
+    @Override
+    public void entityCacheHit(NavigableRole role, String region) { if (detailed) super.entityCacheHit(role, region); }
+
+    @Override
+    public void entityCacheMiss(NavigableRole role, String region) { if (detailed) super.entityCacheMiss(role, region); }
+
+    @Override
+    public void loadCollection(String role) { if (detailed) super.loadCollection(role); }
+
+    @Override
+    public void fetchCollection(String role) { if (detailed) super.fetchCollection(role); }
+
+    @Override
+    public void updateCollection(String role) { if (detailed) super.updateCollection(role); }
+
+    @Override
+    public void recreateCollection(String role) { if (detailed) super.recreateCollection(role); }
+
+    @Override
+    public void removeCollection(String role) { if (detailed) super.removeCollection(role); }
+
+    @Override
+    public void collectionCachePut(NavigableRole role, String region) { if (detailed) super.collectionCachePut(role, region); }
+
+    @Override
+    public void collectionCacheHit(NavigableRole role, String region) { if (detailed) super.collectionCacheHit(role, region); }
+
+    @Override
+    public void collectionCacheMiss(NavigableRole role, String region) { if (detailed) super.collectionCacheMiss(role, region); }
+
+    @Override
+    public void naturalIdCachePut(NavigableRole role, String region) { if (detailed) super.naturalIdCachePut(role, region); }
+
+    @Override
+    public void naturalIdCacheHit(NavigableRole role, String region) { if (detailed) super.naturalIdCacheHit(role, region); }
+
+    @Override
+    public void naturalIdCacheMiss(NavigableRole role, String region) { if (detailed) super.naturalIdCacheMiss(role, region); }
+
+    @Override
+    public void naturalIdQueryExecuted(String rootEntityName, long time) { if (detailed) super.naturalIdQueryExecuted(rootEntityName, time); }
+
+    @Override
+    public void queryCacheHit(String hql, String region) { if (detailed) super.queryCacheHit(hql, region); }
+
+    @Override
+    public void queryCacheMiss(String hql, String region) { if (detailed) super.queryCacheMiss(hql, region); }
+
+    @Override
+    public void queryCachePut(String hql, String region) { if (detailed) super.queryCachePut(hql, region); }
+
+    @Override
+    public void queryCompiled(String hql, long time) { if (detailed) super.queryCompiled(hql, time); }
+
+    @Override
+    public void queryPlanCacheHit(String query) { if (detailed) super.queryPlanCacheHit(query); }
+
+    @Override
+    public void queryPlanCacheMiss(String query) { if (detailed) super.queryPlanCacheMiss(query); }
+
+    @Override
+    public void slowQuery(String sql, long time) { if (detailed) super.slowQuery(sql, time); }
+}
@@ -2,7 +2,10 @@ package com.elbouch.auto.config;
 
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
 import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
@@ -32,6 +35,24 @@ public class SecurityConfig {
         return new InMemoryUserDetailsManager(admin);
     }
 
+    // Actuator endpoints also accept HTTP Basic, so Prometheus can scrape /actuator/prometheus without a login form.
+    // The 401 is written directly: sendError would dispatch to /error, which the main chain redirects to the login page.
+    @Bean
+    @Order(1)
+    public SecurityFilterChain actuatorFilterChain(HttpSecurity http) throws Exception {
+        http
+            .securityMatcher("/actuator/**")
+            .authorizeHttpRequests(auth -> auth
+                .requestMatchers("/actuator/health").permitAll()
+                .anyRequest().hasRole("ADMIN")
+            )
+            .httpBasic(basic -> basic.authenticationEntryPoint((request, response, e) -> {
+                response.setHeader(HttpHeaders.WWW_AUTHENTICATE, "Basic realm=\"actuator\"");
+                response.setStatus(HttpStatus.UNAUTHORIZED.value());
+            }));
+        return http.build();
+    }
+
     @Bean
     public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
         http
@@ -46,8 +67,9 @@ public class SecurityConfig {
                 .contentTypeOptions(Customizer.withDefaults())
             )
             .authorizeHttpRequests(auth -> auth
+                .requestMatchers(HttpMethod.GET, "/api/v1/export/**").hasRole("ADMIN")
                 .requestMatchers(HttpMethod.GET, "/api/**").permitAll()
-                .requestMatchers("/", "/shop", "/v3/api-docs/**", "/swagger-ui.html", "/swagger-ui/**", "/actuator/health").permitAll()
+                .requestMatchers("/", "/shop", "/v3/api-docs/**", "/swagger-ui.html", "/swagger-ui/**").permitAll()
                 .requestMatchers("/uploads/**", "/files/**", "/assets/**", "/admin/login", "/css/**", "/js/**").permitAll()
                 .requestMatchers(HttpMethod.POST, "/api/**").hasRole("ADMIN")
                 .requestMatchers(HttpMethod.PUT, "/api/**").hasRole("ADMIN")
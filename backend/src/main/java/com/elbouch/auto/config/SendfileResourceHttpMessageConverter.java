@@ -0,0 +1,62 @@
+package com.elbouch.auto.config;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.ResourceHttpMessageConverter;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Lets Tomcat send large files with sendfile (kernel zero-copy) instead of copying them through the JVM.
+ * Headers, conditional requests and ranges are still handled by Spring; only the body transfer changes,
+ * and only when the connector advertises sendfile support.
+ */
+public class SendfileResourceHttpMessageConverter extends ResourceHttpMessageConverter {
+
+    private static final String SUPPORTED = "org.apache.tomcat.sendfile.support";
+    private static final String FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String START = "org.apache.tomcat.sendfile.start";
+    private static final String END = "org.apache.tomcat.sendfile.end";
+
+    private final long minBytes;
+
+    public SendfileResourceHttpMessageConverter(long minBytes) {
+        this.minBytes = minBytes;
+    }
+
+    @Override
+    protected void writeContent(Resource resource, HttpOutputMessage outputMessage) throws IOException {
+        HttpServletRequest request = currentRequest();
+        File file = file(resource);
+        if (request != null && file != null && Boolean.TRUE.equals(request.getAttribute(SUPPORTED))) {
+            long length = file.length();
+            if (length >= minBytes) {
+                request.setAttribute(FILENAME, file.getAbsolutePath());
+                request.setAttribute(START, 0L);
+                request.setAttribute(END, length);
+                return;
+            }
+        }
+        super.writeContent(resource, outputMessage);
+    }
+
+    // classpath resources inside the jar, or anything else not backed by a plain file, are streamed
+    private static File file(Resource resource) {
+        try {
+            File file = resource.getFile();
+            return file.isFile() ? file : null;
+        } catch (IOException | UnsupportedOperationException e) {
+            return null;
+        }
+    }
+
+    private static HttpServletRequest currentRequest() {
+        return RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes
+                ? attributes.getRequest()
+                : null;
+    }
+}
@@ -0,0 +1,81 @@
+package com.elbouch.auto.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.resource.ResourceHttpRequestHandler;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Cache headers for static resources. A URL whose content can never change is cached for a year without
+ * revalidation: uploads (stored under their content hash, older ones under never reused random names)
+ * and content-versioned links (name-<md5>.ext). Anything else is revalidated with ETag / Last-Modified.
+ * Only a 2xx or 304 gets them, so a 404 for a file not uploaded yet is never cached: the status is
+ * checked when the response is about to be committed, after the resource handler has set it.
+ */
+public class StaticCachePolicy extends OncePerRequestFilter {
+
+    private static final Pattern VERSIONED = Pattern.compile("-[0-9a-f]{32}\\.[^/.]+$");
+    private static final String IMMUTABLE = CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().immutable().getHeaderValue();
+    private static final String REVALIDATE = CacheControl.noCache().cachePublic().getHeaderValue();
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        CachingResponse wrapped = new CachingResponse(request, response);
+        chain.doFilter(request, wrapped);
+        wrapped.applyPolicy();
+    }
+
+    private static final class CachingResponse extends HttpServletResponseWrapper {
+        private final HttpServletRequest request;
+        private boolean applied;
+
+        CachingResponse(HttpServletRequest request, HttpServletResponse response) {
+            super(response);
+            this.request = request;
+        }
+
+        // the handler mapping exposes the handler before it runs, the status is final once the body starts
+        void applyPolicy() {
+            if (applied || isCommitted()) return;
+            applied = true;
+            if (!(request.getAttribute(HandlerMapping.BEST_MATCHING_HANDLER_ATTRIBUTE) instanceof ResourceHttpRequestHandler)) return;
+            int status = getStatus();
+            if ((status >= 200 && status < 300) || status == HttpServletResponse.SC_NOT_MODIFIED) {
+                String path = request.getRequestURI().substring(request.getContextPath().length());
+                boolean immutable = path.startsWith("/uploads/") || VERSIONED.matcher(path).find();
+                setHeader(HttpHeaders.CACHE_CONTROL, immutable ? IMMUTABLE : REVALIDATE);
+            }
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            applyPolicy();
+            return super.getOutputStream();
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            applyPolicy();
+            return super.getWriter();
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            applyPolicy();
+            super.flushBuffer();
+        }
+    }
+}
@@ -1,10 +1,17 @@
 package com.elbouch.auto.config;
 
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.ViewControllerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.handler.SimpleUrlHandlerMapping;
+import org.springframework.web.servlet.resource.EncodedResourceResolver;
+import org.springframework.web.servlet.resource.ResourceHttpRequestHandler;
+import org.springframework.web.servlet.resource.VersionResourceResolver;
 
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -19,18 +26,46 @@ public class WebConfig implements WebMvcConfigurer {
     public void addResourceHandlers(ResourceHandlerRegistry registry) {
         Path uploadPath = Paths.get(uploadsDir).toAbsolutePath().normalize();
         
-        // Serve uploaded files from /uploads/** and /files/**
+        // Serve uploaded files from /uploads/** and /files/**; .br/.gz siblings are used when the client accepts them.
+        // No resolution cache for uploads: files are deleted when their last image goes away
         registry.addResourceHandler("/uploads/**")
                 .addResourceLocations("file:" + uploadPath.toString() + "/")
-                .setCachePeriod(3600);
+                .resourceChain(false)
+                .addResolver(new EncodedResourceResolver());
         
+        // also answers content-versioned names (sample-2-<md5>.svg)
         registry.addResourceHandler("/files/**")
                 .addResourceLocations("file:" + uploadPath.toString() + "/")
-                .setCachePeriod(3600);
+                .resourceChain(true)
+                .addResolver(new EncodedResourceResolver())
+                .addResolver(new VersionResourceResolver().addContentVersionStrategy("/**"));
+    }
+
+    @Bean
+    public FilterRegistrationBean<StaticCachePolicy> staticCachePolicy() {
+        return new FilterRegistrationBean<>(new StaticCachePolicy());
     }
 
     @Override
     public void addViewControllers(ViewControllerRegistry registry) {
         registry.addViewController("/admin/login").setViewName("admin/login");
     }
+
+    // Resource handlers are built inside the MVC configuration, their body writer can only be swapped afterwards
+    @Bean
+    public static BeanPostProcessor sendfileResources(@Value("${app.static.sendfile-min-bytes:49152}") long minBytes) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof SimpleUrlHandlerMapping mapping && "resourceHandlerMapping".equals(beanName)) {
+                    mapping.getUrlMap().values().forEach(handler -> {
+                        if (handler instanceof ResourceHttpRequestHandler resources) {
+                            resources.setResourceHttpMessageConverter(new SendfileResourceHttpMessageConverter(minBytes));
+                        }
+                    });
+                }
+                return bean;
+            }
+        };
+    }
 }
@@ -5,12 +5,12 @@ import com.elbouch.auto.entity.Category;
 import com.elbouch.auto.entity.Image;
 import com.elbouch.auto.entity.Product;
 import com.elbouch.auto.entity.Tag;
-import com.elbouch.auto.repository.CategoryRepository;
 import com.elbouch.auto.repository.ImageRepository;
 import com.elbouch.auto.repository.ProductRepository;
-import com.elbouch.auto.repository.TagRepository;
+import com.elbouch.auto.service.CategoryService;
 import com.elbouch.auto.service.ImageService;
 import com.elbouch.auto.service.ProductService;
+import com.elbouch.auto.service.TagService;
 import com.elbouch.auto.util.Mapper;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
@@ -26,26 +26,26 @@ import java.util.*;
 public class AdminController {
 
     private final ProductRepository productRepository;
-    private final CategoryRepository categoryRepository;
-    private final TagRepository tagRepository;
     private final ProductService productService;
     private final ImageService imageService;
     private final ImageRepository imageRepository;
+    private final CategoryService categoryService;
+    private final TagService tagService;
 
-    public AdminController(ProductRepository productRepository, CategoryRepository categoryRepository, TagRepository tagRepository, ProductService productService, ImageService imageService, ImageRepository imageRepository) {
+    public AdminController(ProductRepository productRepository, ProductService productService, ImageService imageService, ImageRepository imageRepository, CategoryService categoryService, TagService tagService) {
         this.productRepository = productRepository;
-        this.categoryRepository = categoryRepository;
-        this.tagRepository = tagRepository;
         this.productService = productService;
         this.imageService = imageService;
         this.imageRepository = imageRepository;
+        this.categoryService = categoryService;
+        this.tagService = tagService;
     }
 
     @GetMapping
     public String dashboard(Model model) {
         model.addAttribute("productsCount", productRepository.count());
-        model.addAttribute("categoriesCount", categoryRepository.count());
-        model.addAttribute("tagsCount", tagRepository.count());
+        model.addAttribute("categoriesCount", categoryService.findAll().size());
+        model.addAttribute("tagsCount", tagService.findAll().size());
         return "admin/dashboard";
     }
 
@@ -59,16 +59,16 @@ public class AdminController {
     @GetMapping("/products/new")
     public String newProduct(Model model) {
         model.addAttribute("dto", new ProductDto(null, null, null, null, null, List.of(), List.of(), true, false, 0, List.of(), Map.of()));
-        model.addAttribute("categories", categoryRepository.findAll());
-        model.addAttribute("tags", tagRepository.findAll());
+        model.addAttribute("categories", categoryService.findAll());
+        model.addAttribute("tags", tagService.findAll());
         return "admin/products/form";
     }
 
     @PostMapping("/products")
     public String createProduct(@ModelAttribute("dto") ProductDto dto, BindingResult br, Model model) {
         if (br.hasErrors()) {
-            model.addAttribute("categories", categoryRepository.findAll());
-            model.addAttribute("tags", tagRepository.findAll());
+            model.addAttribute("categories", categoryService.findAll());
+            model.addAttribute("tags", tagService.findAll());
             return "admin/products/form";
         }
         Product p = productService.create(dto);
@@ -81,8 +81,8 @@ public class AdminController {
         Product p = productRepository.findByIdWithAll(id).orElseThrow();
         model.addAttribute("dto", Mapper.toDto(p));
         model.addAttribute("product", p);
-        model.addAttribute("categories", categoryRepository.findAll());
-        model.addAttribute("tags", tagRepository.findAll());
+        model.addAttribute("categories", categoryService.findAll());
+        model.addAttribute("tags", tagService.findAll());
         return "admin/products/form";
     }
 
@@ -91,8 +91,8 @@ public class AdminController {
         if (br.hasErrors()) {
             Product p = productRepository.findByIdWithAll(id).orElseThrow();
             model.addAttribute("product", p);
-            model.addAttribute("categories", categoryRepository.findAll());
-            model.addAttribute("tags", tagRepository.findAll());
+            model.addAttribute("categories", categoryService.findAll());
+            model.addAttribute("tags", tagService.findAll());
             return "admin/products/form";
         }
         productService.update(id, dto);
@@ -136,45 +136,66 @@ public class AdminController {
     // Categories
     @GetMapping("/categories")
     public String categories(Model model) {
-        model.addAttribute("categories", categoryRepository.findAll());
+        model.addAttribute("categories", categoryService.findAll());
         return "admin/categories/list";
     }
 
     @GetMapping("/categories/new")
     public String newCategory(Model model) {
         model.addAttribute("category", new Category());
+        model.addAttribute("parents", categoryService.findAll());
         return "admin/categories/form";
     }
 
     @PostMapping("/categories")
-    public String createCategory(@ModelAttribute Category category) {
-        categoryRepository.save(category);
-        return "redirect:/admin/categories";
+    public String createCategory(@ModelAttribute Category category, BindingResult br, Model model) {
+        return saveCategory(category, br, model);
     }
 
     @GetMapping("/categories/{id}/edit")
     public String editCategory(@PathVariable UUID id, Model model) {
-        model.addAttribute("category", categoryRepository.findById(id).orElseThrow());
+        model.addAttribute("category", categoryService.findById(id).orElseThrow());
+        model.addAttribute("parents", parentChoices(id));
         return "admin/categories/form";
     }
 
     @PostMapping("/categories/{id}")
-    public String updateCategory(@PathVariable UUID id, @ModelAttribute Category category) {
+    public String updateCategory(@PathVariable UUID id, @ModelAttribute Category category, BindingResult br, Model model) {
         category.setId(id);
-        categoryRepository.save(category);
-        return "redirect:/admin/categories";
+        return saveCategory(category, br, model);
+    }
+
+    // an unknown parent or a cycle is refused by the service; the form is shown again with the reason
+    private String saveCategory(Category category, BindingResult br, Model model) {
+        if (!br.hasErrors()) {
+            try {
+                categoryService.save(category);
+                return "redirect:/admin/categories";
+            } catch (IllegalArgumentException e) {
+                br.rejectValue("parentId", "category.parent", e.getMessage());
+            }
+        }
+        model.addAttribute("parents", parentChoices(category.getId()));
+        return "admin/categories/form";
+    }
+
+    // the category itself and its subcategories cannot become its parent
+    private List<Category> parentChoices(UUID id) {
+        return categoryService.findAll().stream()
+                .filter(c -> id == null || !categoryService.isInSubtree(c.getId(), id))
+                .toList();
     }
 
     @PostMapping("/categories/{id}/delete")
     public String deleteCategory(@PathVariable UUID id) {
-        categoryRepository.deleteById(id);
+        categoryService.deleteById(id);
         return "redirect:/admin/categories";
     }
 
     // Tags
     @GetMapping("/tags")
     public String tags(Model model) {
-        model.addAttribute("tags", tagRepository.findAll());
+        model.addAttribute("tags", tagService.findAll());
         return "admin/tags/list";
     }
 
@@ -186,26 +207,26 @@ public class AdminController {
 
     @PostMapping("/tags")
     public String createTag(@ModelAttribute Tag tag) {
-        tagRepository.save(tag);
+        tagService.save(tag);
         return "redirect:/admin/tags";
     }
 
     @GetMapping("/tags/{id}/edit")
     public String editTag(@PathVariable UUID id, Model model) {
-        model.addAttribute("tag", tagRepository.findById(id).orElseThrow());
+        model.addAttribute("tag", tagService.findById(id).orElseThrow());
         return "admin/tags/form";
     }
 
     @PostMapping("/tags/{id}")
     public String updateTag(@PathVariable UUID id, @ModelAttribute Tag tag) {
         tag.setId(id);
-        tagRepository.save(tag);
+        tagService.save(tag);
         return "redirect:/admin/tags";
     }
 
     @PostMapping("/tags/{id}/delete")
     public String deleteTag(@PathVariable UUID id) {
-        tagRepository.deleteById(id);
+        tagService.deleteById(id);
         return "redirect:/admin/tags";
     }
 }
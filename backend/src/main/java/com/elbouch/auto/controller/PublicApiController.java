@@ -3,15 +3,30 @@ package com.elbouch.auto.controller;
 import com.elbouch.auto.dto.*;
 import com.elbouch.auto.entity.Category;
 import com.elbouch.auto.entity.Product;
+import com.elbouch.auto.service.CatalogVersions;
 import com.elbouch.auto.service.CategoryService;
+import com.elbouch.auto.service.ProductExportService;
+import com.elbouch.auto.service.ProductImportService;
 import com.elbouch.auto.service.ProductService;
 import com.elbouch.auto.service.SseService;
 import com.elbouch.auto.util.Mapper;
+import com.elbouch.auto.util.ProductCursor;
+import com.elbouch.auto.util.SpecFilter;
 import org.springframework.data.domain.Page;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.MultiValueMap;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.server.ResponseStatusException;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.*;
 
 @RestController
@@ -21,18 +36,39 @@ public class PublicApiController {
     private final CategoryService categoryService;
     private final ProductService productService;
     private final SseService sseService;
+    private final CatalogVersions catalogVersions;
+    private final ProductImportService importService;
+    private final ProductExportService exportService;
 
-    public PublicApiController(CategoryService categoryService, ProductService productService, SseService sseService) {
+    public PublicApiController(CategoryService categoryService, ProductService productService, SseService sseService, CatalogVersions catalogVersions, ProductImportService importService, ProductExportService exportService) {
         this.categoryService = categoryService;
         this.productService = productService;
         this.sseService = sseService;
+        this.catalogVersions = catalogVersions;
+        this.importService = importService;
+        this.exportService = exportService;
     }
 
     @GetMapping("/categories")
-    public List<CategoryDto> categories() {
+    public List<CategoryDto> categories(ServletWebRequest request) {
+        if (notModified(request, catalogVersions.categories())) return null;
         return categoryService.findAll().stream().map(Mapper::toDto).toList();
     }
 
+    @GetMapping("/categories/tree")
+    public List<CategoryNodeDto> categoryTree(ServletWebRequest request) {
+        if (notModified(request, catalogVersions.categories())) return null;
+        return categoryService.tree();
+    }
+
+    @GetMapping("/categories/{slug}/breadcrumbs")
+    public List<CategoryDto> breadcrumbs(@PathVariable String slug, ServletWebRequest request) {
+        if (notModified(request, catalogVersions.categories())) return null;
+        List<Category> path = categoryService.breadcrumbs(slug);
+        if (path.isEmpty()) throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Unknown category: " + slug);
+        return path.stream().map(Mapper::toDto).toList();
+    }
+
     @GetMapping("/products")
     public PagedResponse<ProductDto> products(
             @RequestParam(required = false) String search,
@@ -41,35 +77,93 @@ public class PublicApiController {
             @RequestParam(required = false) Integer visible,
             @RequestParam(required = false) Integer featured,
             @RequestParam(defaultValue = "1") int page,
-            @RequestParam(name = "per_page", defaultValue = "12") int perPage
+            @RequestParam(name = "per_page", defaultValue = "12") int perPage,
+            @RequestParam(defaultValue = "0") int facets,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(name = "with_total", defaultValue = "0") int withTotal,
+            @RequestParam MultiValueMap<String, String> params,
+            ServletWebRequest request
     ) {
+        if (notModified(request, catalogVersions.catalogue())) return null;
         Boolean vis = visible == null ? null : visible == 1;
         Boolean feat = featured == null ? null : featured == 1;
-        Page<Product> result = productService.search(search, category, tags, vis, feat, page, perPage);
-        List<ProductDto> data = result.getContent().stream().map(Mapper::toDto).toList();
-        Map<String, Object> meta = Map.of(
-                "page", page,
-                "perPage", perPage,
-                "total", result.getTotalElements()
-        );
+        List<SpecFilter> specs;
+        try {
+            specs = SpecFilter.parse(params);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+        if (cursor != null) {
+            // cursor mode: pass an empty cursor for the first page, then meta.next
+            ProductService.Window window;
+            try {
+                ProductCursor position = cursor.isBlank() ? null : ProductCursor.decode(cursor);
+                window = productService.scroll(search, category, tags, vis, feat, specs, position, perPage, withTotal == 1);
+            } catch (IllegalArgumentException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+            }
+            Map<String, Object> meta = new LinkedHashMap<>();
+            meta.put("perPage", perPage);
+            meta.put("next", window.next());
+            if (window.total() != null) meta.put("total", window.total());
+            if (facets == 1) {
+                productService.facets(search, category, tags, vis, feat, specs).ifPresent(f -> meta.put("facets", f));
+            }
+            return new PagedResponse<>(productService.toDtos(window.content()), meta);
+        }
+        Page<Product> result = productService.search(search, category, tags, vis, feat, specs, page, perPage);
+        List<ProductDto> data = productService.toDtos(result.getContent());
+        Map<String, Object> meta = new LinkedHashMap<>();
+        meta.put("page", page);
+        meta.put("perPage", perPage);
+        meta.put("total", result.getTotalElements());
+        if (facets == 1) {
+            productService.facets(search, category, tags, vis, feat, specs).ifPresent(f -> meta.put("facets", f));
+        }
         return new PagedResponse<>(data, meta);
     }
 
     @GetMapping("/products/{slug}")
-    public ProductDto product(@PathVariable String slug) {
-        Product p = productService.findBySlug(slug).orElseThrow();
-        return Mapper.toDto(p);
+    public ProductDto product(@PathVariable String slug, ServletWebRequest request) {
+        if (notModified(request, catalogVersions.product(slug))) return null;
+        return productService.findBySlug(slug).orElseThrow();
     }
 
     @GetMapping("/products/{slug}/related")
-    public List<ProductDto> related(@PathVariable String slug) {
-        Product p = productService.findBySlug(slug).orElseThrow();
-        return productService.related(p, 8).stream().map(Mapper::toDto).toList();
+    public List<ProductDto> related(@PathVariable String slug, ServletWebRequest request) {
+        if (notModified(request, catalogVersions.catalogue())) return null;
+        ProductDto p = productService.findBySlug(slug).orElseThrow();
+        return productService.toDtos(productService.related(p, 8));
+    }
+
+    // Answers If-None-Match / If-Modified-Since from in-memory versions, before any service call.
+    // no-cache makes browsers revalidate every time instead of guessing freshness from Last-Modified.
+    private boolean notModified(ServletWebRequest request, CatalogVersions.Version version) {
+        if (request.getResponse() != null) request.getResponse().setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+        return request.checkNotModified(version.etag(), version.lastModified());
+    }
+
+    // Whole catalogue, hidden products included unless visible is given (admin only, see SecurityConfig)
+    @GetMapping("/export/products")
+    public ResponseEntity<StreamingResponseBody> export(@RequestParam(defaultValue = "ndjson") String format,
+                                                        @RequestParam(required = false) Integer visible) {
+        Boolean vis = visible == null ? null : visible == 1;
+        return switch (format) {
+            case "ndjson" -> ResponseEntity.ok()
+                    .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                    .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename("products.ndjson").build().toString())
+                    .body(out -> exportService.writeNdjson(vis, out));
+            case "csv" -> ResponseEntity.ok()
+                    .contentType(MediaType.parseMediaType("text/csv;charset=UTF-8"))
+                    .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename("products.csv").build().toString())
+                    .body(out -> exportService.writeCsv(vis, out));
+            default -> throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unsupported format: " + format);
+        };
     }
 
     @GetMapping(path = "/events/products", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
-    public SseEmitter events() {
-        return sseService.subscribe();
+    public SseEmitter events(@RequestHeader(name = "Last-Event-ID", required = false) String lastEventId) {
+        return sseService.subscribe(lastEventId);
     }
 
     // Secured endpoints for write operations (admin authenticated via Spring Security)
@@ -79,6 +173,17 @@ public class PublicApiController {
         return Mapper.toDto(saved);
     }
 
+    // The body is read as it arrives, never held in memory as a whole
+    @PostMapping(path = "/products/import", consumes = "application/x-ndjson")
+    public ImportReportDto importNdjson(InputStream body) throws IOException {
+        return importService.importNdjson(body);
+    }
+
+    @PostMapping(path = "/products/import", consumes = "text/csv")
+    public ImportReportDto importCsv(InputStream body) throws IOException {
+        return importService.importCsv(body);
+    }
+
     @PutMapping("/products/{id}")
     public ProductDto update(@PathVariable UUID id, @RequestBody ProductDto dto) {
         Product saved = productService.update(id, dto);
@@ -1,9 +1,6 @@
 package com.elbouch.auto.controller;
 
-import com.elbouch.auto.repository.ProductRepository;
-import com.elbouch.auto.util.Mapper;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Sort;
+import com.elbouch.auto.service.ProductService;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -11,20 +8,16 @@ import org.springframework.web.bind.annotation.GetMapping;
 @Controller
 public class PublicController {
 
-    private final ProductRepository productRepository;
+    private final ProductService productService;
 
-    public PublicController(ProductRepository productRepository) {
-        this.productRepository = productRepository;
+    public PublicController(ProductService productService) {
+        this.productService = productService;
     }
 
     @GetMapping(value = {"/", "/shop"})
     public String shop(Model model) {
-        Sort sort = Sort.by(Sort.Order.asc("sortOrder").nullsLast(), Sort.Order.desc("createdAt"));
-        var products = productRepository.findAll(
-            (root, query, cb) -> cb.equal(root.get("isVisible"), true),
-            PageRequest.of(0, 50, sort)
-        );
-        model.addAttribute("products", products.getContent().stream().map(Mapper::toDto).toList());
+        var products = productService.search(null, null, null, true, null, null, 1, 50);
+        model.addAttribute("products", productService.toDtos(products.getContent()));
         return "public/index";
     }
 }
@@ -0,0 +1,10 @@
+package com.elbouch.auto.dto;
+
+import java.util.List;
+
+public record CategoryNodeDto(
+        String id,
+        String name,
+        String slug,
+        List<CategoryNodeDto> children
+) {}
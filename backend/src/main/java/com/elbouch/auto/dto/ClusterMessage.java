@@ -0,0 +1,61 @@
+package com.elbouch.auto.dto;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Change notice exchanged between backend nodes. {@code type} is one of
+ * product (id + affected slugs), catalogue (many products at once, e.g. an import: ids + slugs),
+ * tags or categories (id of the tag or category that changed), events (product events to fan out)
+ * or resync (the receiver lost track and must drop everything it derived from the database).
+ */
+public record ClusterMessage(
+        String origin,
+        String type,
+        String id,
+        List<String> ids,
+        List<String> slugs,
+        List<ProductEventDto> events
+) {
+    public static ClusterMessage product(String origin, UUID productId, List<String> slugs) {
+        return new ClusterMessage(origin, "product", productId.toString(), null, slugs, null);
+    }
+
+    public static ClusterMessage catalogue(String origin, Collection<UUID> productIds, List<String> slugs) {
+        return new ClusterMessage(origin, "catalogue", null, productIds.stream().map(UUID::toString).toList(), slugs, null);
+    }
+
+    public static ClusterMessage tags(String origin, UUID tagId) {
+        return new ClusterMessage(origin, "tags", tagId.toString(), null, null, null);
+    }
+
+    public static ClusterMessage categories(String origin, UUID categoryId) {
+        return new ClusterMessage(origin, "categories", categoryId.toString(), null, null, null);
+    }
+
+    public static ClusterMessage events(String origin, List<ProductEventDto> events) {
+        return new ClusterMessage(origin, "events", null, null, null, events);
+    }
+
+    public static ClusterMessage resync(String origin) {
+        return new ClusterMessage(origin, "resync", null, null, null, null);
+    }
+
+    /** The same notice as two smaller ones, for a transport with a size limit; empty if it cannot be split. */
+    public List<ClusterMessage> split() {
+        if (events != null && events.size() > 1) {
+            return List.of(events(origin, half(events, true)), events(origin, half(events, false)));
+        }
+        if ("catalogue".equals(type) && (ids.size() > 1 || slugs.size() > 1)) {
+            return List.of(new ClusterMessage(origin, type, null, half(ids, true), half(slugs, true), null),
+                    new ClusterMessage(origin, type, null, half(ids, false), half(slugs, false), null));
+        }
+        return List.of();
+    }
+
+    private static <T> List<T> half(List<T> list, boolean first) {
+        int middle = list.size() / 2;
+        return first ? list.subList(0, middle) : list.subList(middle, list.size());
+    }
+}
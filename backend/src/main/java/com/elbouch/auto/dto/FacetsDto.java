@@ -0,0 +1,9 @@
+package com.elbouch.auto.dto;
+
+import java.util.Map;
+
+public record FacetsDto(
+        Map<String, Integer> categories,
+        Map<String, Integer> tags,
+        Map<String, Map<String, Integer>> specs
+) {}
@@ -1,7 +1,13 @@
 package com.elbouch.auto.dto;
 
+import java.util.List;
+
 public record ImageDto(
         String url,
         String alt,
-        Boolean isCover
+        Boolean isCover,
+        Integer width,
+        Integer height,
+        String placeholder, // tiny blurred preview as a data: URI
+        List<ImageVariantDto> variants
 ) {}
@@ -0,0 +1,8 @@
+package com.elbouch.auto.dto;
+
+public record ImageVariantDto(
+        String url,
+        int width,
+        int height,
+        String format
+) {}
@@ -0,0 +1,12 @@
+package com.elbouch.auto.dto;
+
+import java.util.List;
+
+public record ImportReportDto(
+        long imported,
+        long failed,
+        List<RowError> errors, // first errors only, see failed for the total
+        long durationMs
+) {
+    public record RowError(long line, String message) {}
+}
@@ -18,6 +18,17 @@ public class Image {
     @Column(nullable = false)
     private boolean isCover = false;
 
+    // filled in by ImageDerivativeService once the upload has been processed
+    private Integer width;
+
+    private Integer height;
+
+    @Column(length = 2000)
+    private String placeholder;
+
+    @Column(length = 4000)
+    private String variantsJson;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "product_id", nullable = false)
     private Product product;
@@ -30,6 +41,14 @@ public class Image {
     public void setAlt(String alt) { this.alt = alt; }
     public boolean isCover() { return isCover; }
     public void setCover(boolean cover) { isCover = cover; }
+    public Integer getWidth() { return width; }
+    public void setWidth(Integer width) { this.width = width; }
+    public Integer getHeight() { return height; }
+    public void setHeight(Integer height) { this.height = height; }
+    public String getPlaceholder() { return placeholder; }
+    public void setPlaceholder(String placeholder) { this.placeholder = placeholder; }
+    public String getVariantsJson() { return variantsJson; }
+    public void setVariantsJson(String variantsJson) { this.variantsJson = variantsJson; }
     public Product getProduct() { return product; }
     public void setProduct(Product product) { this.product = product; }
 }
@@ -1,5 +1,6 @@
 package com.elbouch.auto.entity;
 
+import com.elbouch.auto.util.JsonUtils;
 import jakarta.persistence.*;
 import java.time.Instant;
 import java.util.*;
@@ -35,6 +36,11 @@ public class Product {
     @Column(length = 20000)
     private String specsJson; // JSON stocké en TEXT
 
+    // filterable copy of the scalar specs, replaced whenever specsJson is set
+    @ElementCollection
+    @CollectionTable(name = "product_specs", joinColumns = @JoinColumn(name = "product_id"))
+    private Set<SpecAttribute> specAttributes = new HashSet<>();
+
     @Column(nullable = false, updatable = false)
     private Instant createdAt = Instant.now();
 
@@ -70,7 +76,12 @@ public class Product {
     public Integer getSortOrder() { return sortOrder; }
     public void setSortOrder(Integer sortOrder) { this.sortOrder = sortOrder; }
     public String getSpecsJson() { return specsJson; }
-    public void setSpecsJson(String specsJson) { this.specsJson = specsJson; }
+    public void setSpecsJson(String specsJson) {
+        this.specsJson = specsJson;
+        specAttributes.clear();
+        specAttributes.addAll(SpecAttribute.of(JsonUtils.toMap(specsJson)));
+    }
+    public Set<SpecAttribute> getSpecAttributes() { return specAttributes; }
     public Instant getCreatedAt() { return createdAt; }
     public void setCreatedAt(Instant createdAt) { this.createdAt = createdAt; }
     public Set<Category> getCategories() { return categories; }
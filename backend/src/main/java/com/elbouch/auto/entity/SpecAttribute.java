@@ -0,0 +1,74 @@
+package com.elbouch.auto.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * One scalar spec value of a product, as stored in product_specs: the text lower-cased for equality
+ * filters, and the number when the value is numeric, for range filters.
+ */
+@Embeddable
+public class SpecAttribute {
+
+    private static final Pattern NUMBER = Pattern.compile("-?\\d+(\\.\\d+)?");
+    public static final int MAX_KEY_LENGTH = 100;
+    public static final int MAX_TEXT_LENGTH = 255;
+
+    @Column(name = "spec_key", nullable = false, length = MAX_KEY_LENGTH)
+    private String specKey;
+
+    @Column(name = "value_text", nullable = false, length = MAX_TEXT_LENGTH)
+    private String valueText;
+
+    @Column(name = "value_number")
+    private Double valueNumber;
+
+    protected SpecAttribute() {}
+
+    public SpecAttribute(String specKey, String valueText, Double valueNumber) {
+        this.specKey = specKey;
+        this.valueText = valueText;
+        this.valueNumber = valueNumber;
+    }
+
+    /** Scalar entries of a specs map; nested values and overlong keys or values are not filterable. */
+    public static Set<SpecAttribute> of(Map<String, Object> specs) {
+        Set<SpecAttribute> attributes = new HashSet<>();
+        if (specs == null) return attributes;
+        specs.forEach((key, value) -> {
+            if (key == null || key.length() > MAX_KEY_LENGTH) return;
+            if (!(value instanceof String || value instanceof Number || value instanceof Boolean)) return;
+            String text = normalize(String.valueOf(value));
+            if (text.isEmpty() || text.length() > MAX_TEXT_LENGTH) return;
+            Double number = value instanceof Number n ? Double.valueOf(n.doubleValue()) : number(text);
+            attributes.add(new SpecAttribute(key, text, number));
+        });
+        return attributes;
+    }
+
+    public static String normalize(String value) {
+        return value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /** The value of a plain decimal like "12" or "-1.5", null for anything else. */
+    public static Double number(String text) {
+        return NUMBER.matcher(text.trim()).matches() ? Double.valueOf(text.trim()) : null;
+    }
+
+    public String getSpecKey() { return specKey; }
+    public String getValueText() { return valueText; }
+    public Double getValueNumber() { return valueNumber; }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof SpecAttribute a && specKey.equals(a.specKey) && valueText.equals(a.valueText) && Objects.equals(valueNumber, a.valueNumber);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(specKey, valueText, valueNumber);
+    }
+}
@@ -2,10 +2,20 @@ package com.elbouch.auto.repository;
 
 import com.elbouch.auto.entity.Category;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Optional;
 import java.util.UUID;
 
 public interface CategoryRepository extends JpaRepository<Category, UUID> {
     Optional<Category> findBySlug(String slug);
+
+    // children of a deleted category move up to its parent
+    @Transactional
+    @Modifying
+    @Query("UPDATE Category c SET c.parentId = :parentId WHERE c.parentId = :id")
+    int reparentChildren(@Param("id") UUID id, @Param("parentId") UUID parentId);
 }
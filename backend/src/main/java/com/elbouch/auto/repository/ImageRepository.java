@@ -2,8 +2,29 @@ package com.elbouch.auto.repository;
 
 import com.elbouch.auto.entity.Image;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 public interface ImageRepository extends JpaRepository<Image, UUID> {
+
+    // Uploads are content-addressed: rows sharing a url share the file
+    long countByUrl(String url);
+
+    Optional<Image> findFirstByUrlAndVariantsJsonIsNotNullAndIdNot(String url, UUID id);
+
+    // Uploads not processed yet (e.g. the application stopped before the pipeline got to them);
+    // processed images always have a variant list, empty when the format cannot be decoded
+    @Query("SELECT i.id FROM Image i WHERE i.variantsJson IS NULL AND i.url LIKE '/uploads/%'")
+    List<UUID> findUnprocessedUploadIds();
+
+    // Only the derivative columns: a concurrent cover or alt change made in the admin is kept
+    @Modifying
+    @Query("UPDATE Image i SET i.width = :width, i.height = :height, i.placeholder = :placeholder, i.variantsJson = :variantsJson WHERE i.id = :id")
+    int updateDerivatives(@Param("id") UUID id, @Param("width") Integer width, @Param("height") Integer height,
+                          @Param("placeholder") String placeholder, @Param("variantsJson") String variantsJson);
 }
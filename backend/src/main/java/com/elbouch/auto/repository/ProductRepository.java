@@ -1,19 +1,18 @@
 package com.elbouch.auto.repository;
 
 import com.elbouch.auto.entity.Product;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
-import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
-public interface ProductRepository extends JpaRepository<Product, UUID>, JpaSpecificationExecutor<Product> {
+public interface ProductRepository extends JpaRepository<Product, UUID>, JpaSpecificationExecutor<Product>, ProductRepositoryCustom {
     @EntityGraph(attributePaths = {"images", "categories", "tags"})
     @Query("SELECT p FROM Product p WHERE p.id = :id")
     Optional<Product> findByIdWithAll(@Param("id") UUID id);
@@ -23,8 +22,15 @@ public interface ProductRepository extends JpaRepository<Product, UUID>, JpaSpec
     Optional<Product> findBySlugWithAll(@Param("slug") String slug);
     
     @EntityGraph(attributePaths = {"images", "categories", "tags"})
-    Page<Product> findAll(Specification<Product> spec, Pageable pageable);
+    @Query("SELECT p FROM Product p WHERE p.id IN :ids")
+    List<Product> findAllWithAllByIdIn(@Param("ids") Collection<UUID> ids);
     
     Optional<Product> findBySlug(String slug);
     boolean existsBySlug(String slug);
+
+    @Query("SELECT p.slug FROM Product p WHERE p.slug IN :slugs")
+    List<String> findExistingSlugs(@Param("slugs") Collection<String> slugs);
+
+    @Query("SELECT p.slug FROM Product p WHERE p.id IN :ids")
+    List<String> findSlugsByIdIn(@Param("ids") Collection<UUID> ids);
 }
@@ -0,0 +1,25 @@
+package com.elbouch.auto.repository;
+
+import com.elbouch.auto.entity.Product;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+public interface ProductRepositoryCustom {
+    // Pages only product ids in SQL (LIMIT/OFFSET), associations are loaded separately
+    Page<UUID> findIds(Specification<Product> spec, Pageable pageable);
+
+    // First ids in sort order, no offset and no count query (keyset pagination)
+    List<UUID> findIds(Specification<Product> spec, Sort sort, int limit);
+
+    // count(distinct id), joins in the spec do not inflate it
+    long countDistinct(Specification<Product> spec);
+
+    // Slugs starting with any of base + "-", one query for many bases when picking free numbered slugs
+    List<String> findSlugsWithPrefixes(Collection<String> bases);
+}
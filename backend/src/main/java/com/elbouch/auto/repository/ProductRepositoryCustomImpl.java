@@ -0,0 +1,104 @@
+package com.elbouch.auto.repository;
+
+import com.elbouch.auto.entity.Product;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.*;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.support.PageableExecutionUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+public class ProductRepositoryCustomImpl implements ProductRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager em;
+
+    @Override
+    public Page<UUID> findIds(Specification<Product> spec, Pageable pageable) {
+        TypedQuery<Tuple> typed = idQuery(spec, pageable.getSort());
+        if (pageable.isPaged()) {
+            typed.setFirstResult((int) pageable.getOffset());
+            typed.setMaxResults(pageable.getPageSize());
+        }
+        List<UUID> ids = typed.getResultList().stream().map(t -> t.get(0, UUID.class)).toList();
+        return PageableExecutionUtils.getPage(ids, pageable, () -> countDistinct(spec));
+    }
+
+    @Override
+    public List<UUID> findIds(Specification<Product> spec, Sort sort, int limit) {
+        return idQuery(spec, sort).setMaxResults(limit).getResultList().stream()
+                .map(t -> t.get(0, UUID.class))
+                .toList();
+    }
+
+    @Override
+    public long countDistinct(Specification<Product> spec) {
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        Root<Product> root = query.from(Product.class);
+        Predicate predicate = spec == null ? null : spec.toPredicate(root, query, cb);
+        if (predicate != null) query.where(predicate);
+        query.select(cb.countDistinct(root));
+        // the spec may have flagged the query distinct; countDistinct already covers it
+        query.distinct(false);
+        return em.createQuery(query).getSingleResult();
+    }
+
+    @Override
+    public List<String> findSlugsWithPrefixes(Collection<String> bases) {
+        if (bases.isEmpty()) return List.of();
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+        CriteriaQuery<String> query = cb.createQuery(String.class);
+        Root<Product> root = query.from(Product.class);
+        // slugs only hold [a-z0-9-], nothing to escape for LIKE
+        Predicate[] prefixes = bases.stream()
+                .map(base -> cb.like(root.get("slug"), base + "-%"))
+                .toArray(Predicate[]::new);
+        query.select(root.get("slug")).where(cb.or(prefixes));
+        return em.createQuery(query).getResultList();
+    }
+
+    private TypedQuery<Tuple> idQuery(Specification<Product> spec, Sort sort) {
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<Product> root = query.from(Product.class);
+        Predicate predicate = spec == null ? null : spec.toPredicate(root, query, cb);
+        if (predicate != null) query.where(predicate);
+
+        // sort columns must be selected too, otherwise DISTINCT + ORDER BY is rejected by PostgreSQL
+        List<Order> orders = orders(sort, root, cb);
+        List<Selection<?>> selections = new ArrayList<>();
+        selections.add(root.get("id"));
+        for (Order o : orders) selections.add(o.getExpression());
+        query.multiselect(selections).orderBy(orders);
+        // joins (tags, categories) multiply rows
+        query.distinct(query.isDistinct() || !root.getJoins().isEmpty());
+        return em.createQuery(query);
+    }
+
+    // QueryUtils.toOrders drops Sort null handling, and H2 and PostgreSQL disagree on the default,
+    // so nulls first/last is spelled out as a leading CASE rank
+    private static List<Order> orders(Sort sort, Root<Product> root, CriteriaBuilder cb) {
+        List<Order> orders = new ArrayList<>();
+        for (Sort.Order o : sort) {
+            Path<Object> path = root.get(o.getProperty());
+            if (o.getNullHandling() != Sort.NullHandling.NATIVE) {
+                int nullRank = o.getNullHandling() == Sort.NullHandling.NULLS_LAST ? 1 : 0;
+                orders.add(cb.asc(cb.<Integer>selectCase()
+                        .when(cb.isNull(path), nullRank)
+                        .otherwise(1 - nullRank)));
+            }
+            orders.add(o.isAscending() ? cb.asc(path) : cb.desc(path));
+        }
+        return orders;
+    }
+}
@@ -0,0 +1,74 @@
+package com.elbouch.auto.service;
+
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory versions of the public catalogue, used as strong ETags / Last-Modified so read endpoints
+ * can answer conditional GETs without touching the database.
+ * Every stamp is a value of one process-wide counter; the process start time is part of each ETag
+ * so a restart never reuses an ETag for different content.
+ */
+@Service
+public class CatalogVersions {
+
+    public record Version(String etag, long lastModified) {}
+
+    private record Stamp(long seq, long at) {}
+
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final Stamp initial = new Stamp(0, System.currentTimeMillis());
+    private final AtomicLong sequence = new AtomicLong();
+    // any product, tag or category change: listings and related lists
+    private volatile Stamp catalogue = initial;
+    // tag or category change: may alter every product representation (tag slugs, category ids)
+    private volatile Stamp reference = initial;
+    private volatile Stamp categories = initial;
+    private final Map<String, Stamp> products = new ConcurrentHashMap<>();
+
+    public Version catalogue() {
+        return version("c", catalogue);
+    }
+
+    public Version categories() {
+        return version("k", categories);
+    }
+
+    public Version product(String slug) {
+        Stamp ref = reference;
+        Stamp own = products.getOrDefault(slug, initial);
+        return new Version(epoch + "-r" + ref.seq() + "-p" + own.seq(), Math.max(ref.at(), own.at()));
+    }
+
+    public void productChanged(String... slugs) {
+        Stamp stamp = next();
+        for (String slug : slugs) {
+            if (slug != null) products.put(slug, stamp);
+        }
+        catalogue = stamp;
+    }
+
+    public void tagsChanged() {
+        Stamp stamp = next();
+        reference = stamp;
+        catalogue = stamp;
+    }
+
+    public void categoriesChanged() {
+        Stamp stamp = next();
+        categories = stamp;
+        reference = stamp;
+        catalogue = stamp;
+    }
+
+    private Stamp next() {
+        return new Stamp(sequence.incrementAndGet(), System.currentTimeMillis());
+    }
+
+    private Version version(String kind, Stamp stamp) {
+        return new Version(epoch + "-" + kind + stamp.seq(), stamp.at());
+    }
+}
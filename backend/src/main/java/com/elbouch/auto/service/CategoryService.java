@@ -1,22 +1,92 @@
 package com.elbouch.auto.service;
 
+import com.elbouch.auto.dto.CategoryNodeDto;
 import com.elbouch.auto.entity.Category;
 import com.elbouch.auto.repository.CategoryRepository;
-import org.springframework.cache.annotation.Cacheable;
+import com.elbouch.auto.util.CategoryTree;
+import com.elbouch.auto.util.Mapper;
+import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
 
 @Service
 public class CategoryService {
     private final CategoryRepository categoryRepository;
+    private final ReferenceData referenceData;
+    private final ProductSearchIndex searchIndex;
+    private final CatalogVersions catalogVersions;
+    private final ClusterSync cluster;
 
-    public CategoryService(CategoryRepository categoryRepository) {
+    public CategoryService(CategoryRepository categoryRepository, ReferenceData referenceData, ProductSearchIndex searchIndex, CatalogVersions catalogVersions, ClusterSync cluster) {
         this.categoryRepository = categoryRepository;
+        this.referenceData = referenceData;
+        this.searchIndex = searchIndex;
+        this.catalogVersions = catalogVersions;
+        this.cluster = cluster;
     }
 
-    @Cacheable("categories")
     public List<Category> findAll() {
-        return categoryRepository.findAll();
+        return referenceData.snapshot().categories();
+    }
+
+    public Optional<Category> findById(UUID id) {
+        return referenceData.snapshot().category(id);
+    }
+
+    public List<CategoryNodeDto> tree() {
+        CategoryTree tree = referenceData.snapshot().tree();
+        return tree.roots().stream().map(c -> Mapper.toNode(c, tree)).toList();
+    }
+
+    public boolean isInSubtree(UUID id, UUID root) {
+        return id.equals(root) || referenceData.snapshot().tree().isAncestor(root, id);
+    }
+
+    /** Root first, the category itself last; empty for an unknown slug. */
+    public List<Category> breadcrumbs(String slug) {
+        return referenceData.snapshot().tree().breadcrumbs(slug);
+    }
+
+    // the search index holds category names and slugs: a rename re-indexes the products in the category,
+    // a move none (subtrees are resolved from ReferenceData at query time)
+    public Category save(Category c) {
+        UUID parentId = c.getParentId();
+        ReferenceData.Snapshot refs = referenceData.snapshot();
+        if (parentId != null) {
+            if (refs.category(parentId).isEmpty()) {
+                throw new IllegalArgumentException("Unknown parent category: " + parentId);
+            }
+            if (c.getId() != null && (parentId.equals(c.getId()) || refs.tree().isAncestor(c.getId(), parentId))) {
+                throw new IllegalArgumentException("A category cannot be moved under itself or one of its subcategories");
+            }
+        }
+        Set<UUID> inCategory = c.getId() == null ? Set.of() : refs.category(c.getId())
+                .filter(old -> !Objects.equals(old.getName(), c.getName()) || !Objects.equals(old.getSlug(), c.getSlug()))
+                .map(old -> searchIndex.inCategory(old.getSlug()))
+                .orElse(Set.of());
+        Category saved = categoryRepository.save(c);
+        referenceData.refresh();
+        searchIndex.refresh(inCategory);
+        catalogVersions.categoriesChanged();
+        cluster.categoryChanged(saved.getId());
+        return saved;
+    }
+
+    // product_categories rows cascade, so cached product DTOs may reference the deleted id
+    @CacheEvict(value = "productBySlug", allEntries = true)
+    public void deleteById(UUID id) {
+        Optional<Category> category = referenceData.snapshot().category(id);
+        Set<UUID> inCategory = category.map(c -> searchIndex.inCategory(c.getSlug())).orElse(Set.of());
+        category.ifPresent(c -> categoryRepository.reparentChildren(id, c.getParentId()));
+        categoryRepository.deleteById(id);
+        referenceData.refresh();
+        searchIndex.refresh(inCategory);
+        catalogVersions.categoriesChanged();
+        cluster.categoryChanged(id);
     }
 }
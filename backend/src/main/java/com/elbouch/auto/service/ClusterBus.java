@@ -0,0 +1,16 @@
+package com.elbouch.auto.service;
+
+import com.elbouch.auto.dto.ClusterMessage;
+
+import java.util.function.Consumer;
+
+/**
+ * Broadcast channel between backend nodes. Every subscriber of every node receives each published
+ * message, the publishing node included; delivery is at most once and ordered per publisher.
+ */
+public interface ClusterBus {
+
+    void publish(ClusterMessage message);
+
+    void subscribe(Consumer<ClusterMessage> listener);
+}
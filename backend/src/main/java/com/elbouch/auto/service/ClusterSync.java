@@ -0,0 +1,190 @@
+package com.elbouch.auto.service;
+
+import com.elbouch.auto.dto.ClusterMessage;
+import com.elbouch.auto.dto.ProductEventDto;
+import com.elbouch.auto.repository.ProductRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the other nodes in step with local writes: publishes what changed once it is committed, and
+ * applies what other nodes publish to this node's caches, search index, ETag versions and SSE clients.
+ */
+@Service
+public class ClusterSync {
+
+    private static final long REBUILD_DELAY_MILLIS = 500;
+    // product ids per slug lookup when a tag change evicts the products carrying it
+    private static final int EVICT_BATCH = 500;
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final ClusterBus bus;
+    private final CacheManager cacheManager;
+    private final ProductRepository productRepository;
+    private final ReferenceData referenceData;
+    private final ProductSearchIndex searchIndex;
+    private final CatalogVersions catalogVersions;
+    private final SseService sseService;
+    private final TransactionTemplate readOnly;
+    private final ScheduledExecutorService rebuilds = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "cluster-rebuild");
+        t.setDaemon(true);
+        return t;
+    });
+    // guarded by this
+    private boolean rebuildScheduled;
+
+    public ClusterSync(ClusterBus bus, CacheManager cacheManager, ProductRepository productRepository, ReferenceData referenceData, ProductSearchIndex searchIndex, CatalogVersions catalogVersions, SseService sseService, TransactionTemplate transactionTemplate) {
+        this.bus = bus;
+        this.cacheManager = cacheManager;
+        this.productRepository = productRepository;
+        this.referenceData = referenceData;
+        this.searchIndex = searchIndex;
+        this.catalogVersions = catalogVersions;
+        this.sseService = sseService;
+        this.readOnly = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        this.readOnly.setReadOnly(true);
+    }
+
+    // the search index is only built once the application is ready
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        bus.subscribe(this::apply);
+    }
+
+    public void productChanged(UUID id, String... slugs) {
+        List<String> affected = Arrays.stream(slugs).filter(Objects::nonNull).distinct().toList();
+        publish(ClusterMessage.product(nodeId, id, affected));
+    }
+
+    public void catalogueChanged(Collection<UUID> productIds, List<String> slugs) {
+        publish(ClusterMessage.catalogue(nodeId, productIds, slugs));
+    }
+
+    public void tagChanged(UUID tagId) {
+        publish(ClusterMessage.tags(nodeId, tagId));
+    }
+
+    public void categoryChanged(UUID categoryId) {
+        publish(ClusterMessage.categories(nodeId, categoryId));
+    }
+
+    public void eventsPublished(List<ProductEventDto> events) {
+        if (!events.isEmpty()) publish(ClusterMessage.events(nodeId, events));
+    }
+
+    // a bus outage must not fail the write that was already committed
+    private void publish(ClusterMessage message) {
+        try {
+            bus.publish(message);
+        } catch (Exception ignored) {}
+    }
+
+    private void apply(ClusterMessage message) {
+        if (nodeId.equals(message.origin())) return;
+        switch (message.type()) {
+            case "product" -> product(UUID.fromString(message.id()), message.slugs());
+            case "catalogue" -> {
+                searchIndex.refresh(message.ids().stream().map(UUID::fromString).toList());
+                Cache cache = cacheManager.getCache("productBySlug");
+                if (cache != null) message.slugs().forEach(cache::evict);
+                catalogVersions.productChanged(message.slugs().toArray(String[]::new));
+            }
+            // like a local edit: only the products carrying the tag or category under its old name are re-indexed,
+            // found before the reference data moves on
+            case "tags" -> {
+                Set<UUID> carrying = referenceData.snapshot().tag(UUID.fromString(message.id()))
+                        .map(t -> searchIndex.withTag(t.getSlug())).orElse(Set.of());
+                referenceData.refresh();
+                evictProducts(carrying);
+                searchIndex.refresh(carrying);
+                catalogVersions.tagsChanged();
+            }
+            case "categories" -> {
+                Set<UUID> inCategory = referenceData.snapshot().category(UUID.fromString(message.id()))
+                        .map(c -> searchIndex.inCategory(c.getSlug())).orElse(Set.of());
+                referenceData.refresh();
+                evictAll("productBySlug");
+                searchIndex.refresh(inCategory);
+                catalogVersions.categoriesChanged();
+            }
+            case "events" -> message.events().forEach(sseService::broadcast);
+            case "resync" -> {
+                cacheManager.getCacheNames().forEach(this::evictAll);
+                referenceData.refresh();
+                scheduleRebuild();
+            }
+            default -> {}
+        }
+    }
+
+    // Resyncs come in bursts (a reconnect, several oversized notices): one rebuild, off the bus thread, covers them.
+    // ETags and SSE clients move on once the index they will read is rebuilt.
+    private synchronized void scheduleRebuild() {
+        if (rebuildScheduled) return;
+        rebuildScheduled = true;
+        rebuilds.schedule(() -> {
+            synchronized (this) {
+                rebuildScheduled = false;
+            }
+            try {
+                searchIndex.rebuild();
+                catalogVersions.categoriesChanged();
+                sseService.broadcastResync();
+            } catch (Exception e) {
+                System.err.println("Cluster resync rebuild failed: " + e.getMessage());
+            }
+        }, REBUILD_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        rebuilds.shutdownNow();
+    }
+
+    // same order as a local write: index first, then the cache and the ETag
+    private void product(UUID id, List<String> slugs) {
+        Optional<ProductSearchIndex.Entry> entry = readOnly.execute(status ->
+                productRepository.findByIdWithAll(id).map(searchIndex::entry));
+        if (entry != null && entry.isPresent()) {
+            searchIndex.put(entry.get());
+        } else {
+            searchIndex.remove(id);
+        }
+        Cache cache = cacheManager.getCache("productBySlug");
+        if (cache != null) slugs.forEach(cache::evict);
+        catalogVersions.productChanged(slugs.toArray(String[]::new));
+    }
+
+    private void evictProducts(Set<UUID> ids) {
+        Cache cache = cacheManager.getCache("productBySlug");
+        if (cache == null || ids.isEmpty()) return;
+        List<UUID> all = List.copyOf(ids);
+        for (int i = 0; i < all.size(); i += EVICT_BATCH) {
+            List<UUID> batch = all.subList(i, Math.min(all.size(), i + EVICT_BATCH));
+            List<String> slugs = readOnly.execute(status -> productRepository.findSlugsByIdIn(batch));
+            if (slugs != null) slugs.forEach(cache::evict);
+        }
+    }
+
+        private void evictAll(String name) {
+        Cache cache = cacheManager.getCache(name);
+        if (cache != null) cache.clear();
+    }
+}
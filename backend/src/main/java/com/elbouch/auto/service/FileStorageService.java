@@ -1,28 +1,65 @@
 package com.elbouch.auto.service;
 
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
 
+/**
+ * Uploads are stored under the SHA-256 of their content, so identical bytes are kept once.
+ * A file is first streamed to a temporary name while being hashed, then placed under its content name
+ * (an atomic rename); placing and deleting a name are serialized, so a delete that races with an upload
+ * of the same bytes cannot remove the file the upload relies on.
+ * SVGs get a gzip sibling served to clients that accept it; .br siblings are served too when present.
+ */
 @Service
-public class FileStorageService {
+public class FileStorageService implements MeterBinder {
     private final Path uploadDir;
     private static final Set<String> ALLOWED_EXTENSIONS = Set.of("jpg", "jpeg", "png", "webp", "svg");
     private static final long MAX_FILE_SIZE = 5 * 1024 * 1024; // 5 MB
+    private final Object[] locks = new Object[64];
+    private static final List<String> ENCODED_SIBLINGS = List.of(".gz", ".br");
+    private final LongAdder uploads = new LongAdder();
+    private final LongAdder uploadNanos = new LongAdder();
+    private final LongAdder uploadBytes = new LongAdder();
+
+    /** An upload written to {@code temp}, to be stored as {@code filename}. */
+    public record StagedFile(String filename, Path temp, long size) {}
 
     public FileStorageService(@Value("${app.uploads-dir:./uploads}") String uploadsDir) throws IOException {
         this.uploadDir = Paths.get(uploadsDir).toAbsolutePath().normalize();
         Files.createDirectories(this.uploadDir);
+        for (int i = 0; i < locks.length; i++) locks[i] = new Object();
     }
 
     public String save(MultipartFile file) throws IOException {
+        StagedFile staged = stage(file);
+        place(staged);
+        return staged.filename();
+    }
+
+    public StagedFile stage(MultipartFile file) throws IOException {
         if (file.isEmpty()) {
             throw new IllegalArgumentException("Cannot store empty file");
         }
@@ -40,23 +77,156 @@ public class FileStorageService {
         if (!ALLOWED_EXTENSIONS.contains(extension)) {
             throw new IllegalArgumentException("File type not allowed. Allowed types: " + ALLOWED_EXTENSIONS);
         }
+        if (extension.equals("jpeg")) extension = "jpg";
+
+        long started = System.nanoTime();
+        Path temp = uploadDir.resolve(".upload-" + UUID.randomUUID() + ".tmp");
+        MessageDigest digest = sha256();
+        long size = 0;
+        try (InputStream in = file.getInputStream(); OutputStream out = Files.newOutputStream(temp, StandardOpenOption.CREATE_NEW)) {
+            byte[] buffer = new byte[64 * 1024];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                size += n;
+                // the declared size is only a hint
+                if (size > MAX_FILE_SIZE) {
+                    throw new IllegalArgumentException("File size exceeds maximum allowed (5 MB)");
+                }
+                digest.update(buffer, 0, n);
+                out.write(buffer, 0, n);
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        uploads.increment();
+        uploadNanos.add(System.nanoTime() - started);
+        uploadBytes.add(size);
+        return new StagedFile(HexFormat.of().formatHex(digest.digest()) + "." + extension, temp, size);
+    }
+
+    // Identical content already stored: the staged copy is dropped, unless the stored one is damaged
+    public void place(StagedFile staged) throws IOException {
+        Path target = resolve(staged.filename());
+        synchronized (lockFor(staged.filename())) {
+            if (intact(target, staged)) {
+                Files.deleteIfExists(staged.temp());
+            } else {
+                Files.move(staged.temp(), target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                precompress(target);
+            }
+        }
+    }
+
+    // the stored file still hashes to its name: a same-size but corrupted copy is replaced
+    private boolean intact(Path target, StagedFile staged) throws IOException {
+        if (!Files.exists(target) || Files.size(target) != staged.size()) return false;
+        MessageDigest digest = sha256();
+        try (InputStream in = Files.newInputStream(target)) {
+            byte[] buffer = new byte[64 * 1024];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, n);
+            }
+        }
+        String name = staged.filename();
+        return HexFormat.of().formatHex(digest.digest()).equals(name.substring(0, name.lastIndexOf('.')));
+    }
+
+    // Files stored before precompression existed, or copied in by hand
+    @EventListener(ApplicationReadyEvent.class)
+    public void precompressExisting() {
+        try (Stream<Path> files = Files.list(uploadDir)) {
+            files.filter(f -> f.getFileName().toString().endsWith(".svg"))
+                    .filter(f -> !Files.exists(f.resolveSibling(f.getFileName() + ".gz")))
+                    .forEach(this::precompress);
+        } catch (IOException e) {
+            System.err.println("Error precompressing uploads: " + e.getMessage());
+        }
+    }
 
-        String filename = UUID.randomUUID() + "." + extension;
-        Path targetPath = uploadDir.resolve(filename);
-        Files.copy(file.getInputStream(), targetPath);
-        return filename;
+    private void precompress(Path file) {
+        if (!file.getFileName().toString().endsWith(".svg")) return;
+        Path gz = file.resolveSibling(file.getFileName() + ".gz");
+        Path temp = file.resolveSibling(".gzip-" + UUID.randomUUID() + ".tmp");
+        try {
+            try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(temp))) {
+                Files.copy(file, out);
+            }
+            if (Files.size(temp) < Files.size(file)) {
+                Files.move(temp, gz, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            System.err.println("Error precompressing file: " + file.getFileName());
+        } finally {
+            try { Files.deleteIfExists(temp); } catch (IOException ignored) {}
+        }
+    }
+
+    public void discard(StagedFile staged) {
+        try {
+            Files.deleteIfExists(staged.temp());
+        } catch (IOException e) {
+            System.err.println("Error deleting file: " + staged.temp());
+        }
+    }
+
+    /**
+     * Deletes {@code filename} and {@code derived} unless {@code referenced} says the content is still in use;
+     * checked under the same lock as {@link #place}.
+     */
+    public void deleteIfUnreferenced(String filename, List<String> derived, BooleanSupplier referenced) {
+        synchronized (lockFor(filename)) {
+            if (referenced.getAsBoolean()) return;
+            delete(filename);
+            derived.forEach(this::delete);
+        }
+    }
+
+    public Path resolve(String filename) {
+        Path path = uploadDir.resolve(filename).normalize();
+        if (!path.startsWith(uploadDir)) {
+            throw new IllegalArgumentException("Invalid filename");
+        }
+        return path;
     }
 
     public void delete(String filename) {
         try {
             Path filePath = uploadDir.resolve(filename);
             Files.deleteIfExists(filePath);
+            for (String sibling : ENCODED_SIBLINGS) {
+                Files.deleteIfExists(filePath.resolveSibling(filePath.getFileName() + sibling));
+            }
         } catch (IOException e) {
             // Log error but don't throw exception
             System.err.println("Error deleting file: " + filename);
         }
     }
 
+    // time to stream, hash and write an accepted upload to disk; rejected uploads are not counted
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionTimer.builder("uploads.stage", this, s -> s.uploads.sum(), s -> s.uploadNanos.sum(), TimeUnit.NANOSECONDS)
+                .description("Time spent receiving uploads to disk")
+                .register(registry);
+        FunctionCounter.builder("uploads.bytes", uploadBytes, LongAdder::sum).baseUnit("bytes")
+                .description("Bytes received in accepted uploads")
+                .register(registry);
+    }
+
+    private Object lockFor(String filename) {
+        return locks[Math.floorMod(filename.hashCode(), locks.length)];
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
     private String getFileExtension(String filename) {
         int lastDot = filename.lastIndexOf('.');
         return lastDot > 0 ? filename.substring(lastDot + 1) : "";
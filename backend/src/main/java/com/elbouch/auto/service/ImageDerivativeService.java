@@ -0,0 +1,243 @@
+package com.elbouch.auto.service;
+
+import com.elbouch.auto.dto.ImageVariantDto;
+import com.elbouch.auto.entity.Image;
+import com.elbouch.auto.repository.ImageRepository;
+import com.elbouch.auto.util.JsonUtils;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.imageio.*;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.ConvolveOp;
+import java.awt.image.Kernel;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Background processing of uploads: records the original size, writes downscaled variants (JPEG, or PNG
+ * when the image has transparency, plus WebP when an ImageIO WebP writer is installed) and a tiny blurred
+ * placeholder. Jobs start once the upload has committed and run on a small bounded pool, so the upload
+ * request never waits; jobs dropped because the queue was full are picked up again at the next startup.
+ */
+@Service
+public class ImageDerivativeService {
+
+    private static final String UPLOADS = "/uploads/";
+    private static final int PLACEHOLDER_WIDTH = 16;
+
+    private record Derivatives(Integer width, Integer height, String placeholder, List<ImageVariantDto> variants) {
+        static final Derivatives NONE = new Derivatives(null, null, null, List.of());
+    }
+
+    private final ImageRepository imageRepository;
+    private final FileStorageService fileStorageService;
+    private final ProductService productService;
+    private final TransactionTemplate transactionTemplate;
+    private final int[] widths;
+    private final boolean webp = ImageIO.getImageWritersByFormatName("webp").hasNext();
+    private final ThreadPoolExecutor executor;
+
+    public ImageDerivativeService(ImageRepository imageRepository, FileStorageService fileStorageService, ProductService productService, TransactionTemplate transactionTemplate,
+                                  @Value("${app.images.widths:320,640,1024,1600}") int[] widths,
+                                  @Value("${app.images.workers:2}") int workers,
+                                  @Value("${app.images.queue-capacity:100}") int queueCapacity) {
+        this.imageRepository = imageRepository;
+        this.fileStorageService = fileStorageService;
+        this.productService = productService;
+        this.transactionTemplate = transactionTemplate;
+        this.widths = Arrays.stream(widths).sorted().toArray();
+        AtomicInteger threads = new AtomicInteger();
+        // decoding holds a whole bitmap in memory: few workers, bounded queue
+        this.executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread t = new Thread(r, "image-derivatives-" + threads.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.DiscardPolicy());
+    }
+
+    /** Queues the image once the current transaction commits, so the worker can see the row. */
+    public void schedule(UUID imageId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    executor.execute(() -> process(imageId));
+                }
+            });
+        } else {
+            executor.execute(() -> process(imageId));
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void processPending() {
+        executor.execute(() -> imageRepository.findUnprocessedUploadIds().forEach(this::process));
+    }
+
+    /** Files written for the image besides the original. */
+    public List<String> derivativeFiles(Image image) {
+        return JsonUtils.toList(image.getVariantsJson(), ImageVariantDto.class).stream()
+                .map(ImageVariantDto::url)
+                .filter(url -> url.startsWith(UPLOADS))
+                .map(url -> url.substring(UPLOADS.length()))
+                .toList();
+    }
+
+    private void process(UUID imageId) {
+        try {
+            Image image = imageRepository.findById(imageId).orElse(null);
+            if (image == null || image.getUrl() == null || !image.getUrl().startsWith(UPLOADS)) return;
+            UUID productId = image.getProduct().getId();
+            String url = image.getUrl();
+            String filename = url.substring(UPLOADS.length());
+            // same content uploaded before: its variants are already on disk
+            Optional<Image> processed = imageRepository.findFirstByUrlAndVariantsJsonIsNotNullAndIdNot(url, imageId);
+            Derivatives d = processed.isPresent()
+                    ? new Derivatives(processed.get().getWidth(), processed.get().getHeight(), processed.get().getPlaceholder(),
+                            JsonUtils.toList(processed.get().getVariantsJson(), ImageVariantDto.class))
+                    : derive(filename);
+            String variantsJson = JsonUtils.toJson(d.variants());
+            Integer updated = transactionTemplate.execute(status ->
+                    imageRepository.updateDerivatives(imageId, d.width(), d.height(), d.placeholder(), variantsJson));
+            if (updated == null || updated == 0) {
+                // deleted while we were working
+                List<String> written = d.variants().stream().map(v -> v.url().substring(UPLOADS.length())).toList();
+                fileStorageService.deleteIfUnreferenced(filename, written, () -> imageRepository.countByUrl(url) > 0);
+                return;
+            }
+            productService.broadcastImageUpdate(productId);
+        } catch (Exception e) {
+            System.err.println("Image derivatives failed for " + imageId + ": " + e.getMessage());
+        }
+    }
+
+    private Derivatives derive(String filename) throws IOException {
+        BufferedImage source;
+        int width;
+        int height;
+        try (ImageInputStream in = ImageIO.createImageInputStream(fileStorageService.resolve(filename).toFile())) {
+            Iterator<ImageReader> readers = in == null ? Collections.emptyIterator() : ImageIO.getImageReaders(in);
+            // SVG and anything ImageIO cannot decode is served as uploaded
+            if (!readers.hasNext()) return Derivatives.NONE;
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                width = reader.getWidth(0);
+                height = reader.getHeight(0);
+                // a large photo decoded at full size costs width * height * 4 bytes;
+                // read only every n-th pixel while keeping twice the resolution of the largest variant
+                int largest = Math.min(width, widths[widths.length - 1]);
+                int step = Math.max(1, width / (largest * 2));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                source = reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+
+        boolean alpha = source.getColorModel().hasAlpha();
+        String format = alpha ? "png" : "jpg";
+        String base = filename.substring(0, filename.lastIndexOf('.'));
+        List<ImageVariantDto> variants = new ArrayList<>();
+        for (int w : widths) {
+            if (w >= width) break;
+            int h = Math.max(1, Math.round((float) height * w / width));
+            BufferedImage scaled = scale(source, w, h, alpha);
+            variants.add(write(scaled, base + "-" + w + "." + format, format, h));
+            if (webp) variants.add(write(scaled, base + "-" + w + ".webp", "webp", h));
+        }
+        return new Derivatives(width, height, placeholder(source), variants);
+    }
+
+    private ImageVariantDto write(BufferedImage image, String filename, String format, int height) throws IOException {
+        Path target = fileStorageService.resolve(filename);
+        ImageWriter writer = ImageIO.getImageWritersByFormatName(format).next();
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(Files.newOutputStream(target))) {
+            writer.setOutput(out);
+            writer.write(null, new IIOImage(image, null, null), compressed(writer, format, 0.82f));
+        } finally {
+            writer.dispose();
+        }
+        return new ImageVariantDto(UPLOADS + filename, image.getWidth(), height, format.equals("jpg") ? "jpeg" : format);
+    }
+
+    // 16px wide JPEG, softened so the browser's upscale looks like a blur rather than blocks
+    private String placeholder(BufferedImage source) throws IOException {
+        int h = Math.max(1, Math.round((float) source.getHeight() * PLACEHOLDER_WIDTH / source.getWidth()));
+        BufferedImage tiny = scale(source, Math.min(PLACEHOLDER_WIDTH, source.getWidth()), h, false);
+        float[] box = new float[9];
+        Arrays.fill(box, 1f / 9);
+        BufferedImage blurred = new ConvolveOp(new Kernel(3, 3, box), ConvolveOp.EDGE_NO_OP, null).filter(tiny, null);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpg").next();
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(bytes)) {
+            writer.setOutput(out);
+            writer.write(null, new IIOImage(blurred, null, null), compressed(writer, "jpg", 0.5f));
+        } finally {
+            writer.dispose();
+        }
+        return "data:image/jpeg;base64," + Base64.getEncoder().encodeToString(bytes.toByteArray());
+    }
+
+    private static ImageWriteParam compressed(ImageWriter writer, String format, float quality) {
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        if (!format.equals("png") && param.canWriteCompressed()) {
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            if (param.getCompressionType() == null && param.getCompressionTypes() != null) {
+                param.setCompressionType(param.getCompressionTypes()[0]);
+            }
+            param.setCompressionQuality(quality);
+        }
+        return param;
+    }
+
+    // Halving steps with bilinear filtering: a single large bilinear step skips most source pixels
+    private static BufferedImage scale(BufferedImage source, int width, int height, boolean alpha) {
+        BufferedImage current = source;
+        int w = source.getWidth();
+        int h = source.getHeight();
+        do {
+            w = Math.max(width, w / 2);
+            h = Math.max(height, h / 2);
+            BufferedImage next = new BufferedImage(w, h, alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = next.createGraphics();
+            if (!alpha) {
+                // transparent areas become white instead of black
+                g.setColor(Color.WHITE);
+                g.fillRect(0, 0, w, h);
+            }
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(current, 0, 0, w, h, null);
+            g.dispose();
+            current = next;
+        } while (w != width || h != height);
+        return current;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -3,45 +3,118 @@ package com.elbouch.auto.service;
 import com.elbouch.auto.entity.Image;
 import com.elbouch.auto.entity.Product;
 import com.elbouch.auto.repository.ImageRepository;
+import com.elbouch.auto.repository.ProductRepository;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.util.List;
+import java.util.UUID;
 
 @Service
 public class ImageService {
     private final ImageRepository imageRepository;
     private final FileStorageService fileStorageService;
+    private final ImageDerivativeService derivativeService;
+    private final ProductRepository productRepository;
+    private final ProductService productService;
+    private final TransactionTemplate separate;
 
-    public ImageService(ImageRepository imageRepository, FileStorageService fileStorageService) {
+    public ImageService(ImageRepository imageRepository, FileStorageService fileStorageService, ImageDerivativeService derivativeService,
+                        ProductRepository productRepository, ProductService productService, TransactionTemplate transactionTemplate) {
         this.imageRepository = imageRepository;
         this.fileStorageService = fileStorageService;
+        this.derivativeService = derivativeService;
+        this.productRepository = productRepository;
+        this.productService = productService;
+        this.separate = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        this.separate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
     }
 
     public Image store(Product product, MultipartFile file, boolean cover) throws IOException {
-        String filename = fileStorageService.save(file);
-        
+        FileStorageService.StagedFile staged = fileStorageService.stage(file);
+
         // If setting as cover, unset all other covers for this product
         if (cover || product.getImages().stream().noneMatch(Image::isCover)) {
             product.getImages().forEach(img -> img.setCover(false));
             cover = true;
         }
-        
+
         Image img = new Image();
         img.setProduct(product);
-        img.setUrl("/uploads/" + filename);
+        img.setUrl("/uploads/" + staged.filename());
         img.setAlt(file.getOriginalFilename() != null ? file.getOriginalFilename() : "Product image");
         img.setCover(cover);
-        return imageRepository.save(img);
+        Image saved;
+        try {
+            saved = imageRepository.save(img);
+        } catch (RuntimeException e) {
+            fileStorageService.discard(staged);
+            throw e;
+        }
+        // the file is stored under its content name once the row pointing at it is committed
+        whenComplete(() -> {
+            try {
+                fileStorageService.place(staged);
+            } catch (IOException e) {
+                System.err.println("Error storing upload " + staged.filename() + ": " + e.getMessage());
+                fileStorageService.discard(staged);
+                removeUnplaced(product.getId(), saved.getId());
+            }
+        }, () -> fileStorageService.discard(staged));
+        // sizes, variants and placeholder are filled in later, the upload returns now
+        derivativeService.schedule(saved.getId());
+        return saved;
     }
 
     public void deleteImage(Image image) {
         String url = image.getUrl();
+        List<String> derived = derivativeService.derivativeFiles(image);
+        imageRepository.delete(image);
         if (url != null && url.startsWith("/uploads/")) {
             String filename = url.substring("/uploads/".length());
-            fileStorageService.delete(filename);
+            // other images may share the content; only committed rows count
+            whenComplete(() -> fileStorageService.deleteIfUnreferenced(filename, derived,
+                    () -> imageRepository.countByUrl(url) > 0), () -> {});
         }
-        imageRepository.delete(image);
     }
-}
 
+    // the row is committed but its file never made it to disk: drop the row rather than serve a broken image
+    private void removeUnplaced(UUID productId, UUID imageId) {
+        try {
+            // images loaded on their own: the fetch join with categories repeats them
+            separate.executeWithoutResult(status -> productRepository.findById(productId).ifPresent(p -> {
+                Image image = p.getImages().stream().filter(i -> i.getId().equals(imageId)).findFirst().orElse(null);
+                if (image == null) return;
+                p.getImages().remove(image);
+                if (image.isCover() && !p.getImages().isEmpty()) p.getImages().get(0).setCover(true);
+                productRepository.save(p);
+                productService.broadcastImageUpdate(productId);
+            }));
+        } catch (RuntimeException e) {
+            System.err.println("Error removing image " + imageId + " without a file: " + e.getMessage());
+        }
+    }
+
+    private void whenComplete(Runnable committed, Runnable rolledBack) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    committed.run();
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) rolledBack.run();
+                }
+            });
+        } else {
+            committed.run();
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.elbouch.auto.service;
+
+import com.elbouch.auto.dto.ClusterMessage;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Bus between the application contexts of one JVM: a single node only hears itself, several contexts
+ * started side by side (e.g. against a shared in-memory database) behave like a cluster.
+ */
+public class InProcessClusterBus implements ClusterBus {
+
+    private static final Set<InProcessClusterBus> NODES = ConcurrentHashMap.newKeySet();
+
+    private final List<Consumer<ClusterMessage>> listeners = new CopyOnWriteArrayList<>();
+    // one thread per node keeps delivery ordered and off the publisher's thread
+    private final ExecutorService delivery = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "cluster-bus");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // joins once constructed, so other nodes never deliver to a half-built instance
+    @PostConstruct
+    public void join() {
+        NODES.add(this);
+    }
+
+    @Override
+    public void publish(ClusterMessage message) {
+        for (InProcessClusterBus node : NODES) {
+            node.delivery.execute(() -> node.listeners.forEach(l -> l.accept(message)));
+        }
+    }
+
+    @Override
+    public void subscribe(Consumer<ClusterMessage> listener) {
+        listeners.add(listener);
+    }
+
+    @PreDestroy
+    public void close() {
+        NODES.remove(this);
+        delivery.shutdown();
+    }
+}
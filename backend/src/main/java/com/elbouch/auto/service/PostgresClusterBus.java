@@ -0,0 +1,142 @@
+package com.elbouch.auto.service;
+
+import com.elbouch.auto.dto.ClusterMessage;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Bus over PostgreSQL LISTEN/NOTIFY. Notifications go through a pooled connection of their own in
+ * auto-commit, never one bound to the caller's transaction (NOTIFY is only delivered when its transaction
+ * commits); listening uses one dedicated connection outside the pool, reopened if it drops.
+ * Notifications sent while it was down are lost, so a reconnect is delivered to subscribers as a resync.
+ */
+public class PostgresClusterBus implements ClusterBus {
+
+    // NOTIFY payloads must stay under 8000 bytes
+    private static final int MAX_PAYLOAD = 7900;
+
+    private final DataSource dataSource;
+    private final DataSourceProperties properties;
+    private final ObjectMapper mapper;
+    private final String channel;
+    private final List<Consumer<ClusterMessage>> listeners = new CopyOnWriteArrayList<>();
+    private final Thread listenerThread;
+    private volatile boolean running = true;
+
+    public PostgresClusterBus(DataSource dataSource, DataSourceProperties properties, ObjectMapper mapper, String channel) {
+        if (!channel.matches("[a-z_][a-z0-9_]*")) {
+            throw new IllegalArgumentException("Invalid cluster channel name: " + channel);
+        }
+        this.dataSource = dataSource;
+        this.properties = properties;
+        this.mapper = mapper;
+        this.channel = channel;
+        this.listenerThread = new Thread(this::listen, "cluster-bus-listener");
+        this.listenerThread.setDaemon(true);
+    }
+
+    @PostConstruct
+    public void start() {
+        listenerThread.start();
+    }
+
+    @Override
+    public void publish(ClusterMessage message) {
+        String payload = write(message);
+        if (payload.getBytes(StandardCharsets.UTF_8).length <= MAX_PAYLOAD) {
+            notify(payload);
+            return;
+        }
+        List<ClusterMessage> halves = message.split();
+        if (halves.isEmpty()) {
+            publish(ClusterMessage.resync(message.origin()));
+        } else {
+            halves.forEach(this::publish);
+        }
+    }
+
+    // straight from the pool rather than through DataSourceUtils, which would hand back the caller's transaction connection
+    private void notify(String payload) {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement("SELECT pg_notify(?, ?)")) {
+            if (!connection.getAutoCommit()) connection.setAutoCommit(true);
+            statement.setString(1, channel);
+            statement.setString(2, payload);
+            statement.execute();
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not publish to " + channel, e);
+        }
+    }
+
+    @Override
+    public void subscribe(Consumer<ClusterMessage> listener) {
+        listeners.add(listener);
+    }
+
+    private void listen() {
+        boolean reconnect = false;
+        while (running) {
+            try (Connection connection = DriverManager.getConnection(
+                    properties.determineUrl(), properties.determineUsername(), properties.determinePassword())) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + channel);
+                }
+                if (reconnect) deliver(ClusterMessage.resync(null));
+                reconnect = true;
+                PGConnection pg = connection.unwrap(PGConnection.class);
+                while (running) {
+                    PGNotification[] notifications = pg.getNotifications(1000);
+                    if (notifications == null) continue;
+                    for (PGNotification n : notifications) {
+                        deliver(mapper.readValue(n.getParameter(), ClusterMessage.class));
+                    }
+                }
+            } catch (Exception e) {
+                if (!running) return;
+                try {
+                    Thread.sleep(2000);
+                } catch (InterruptedException ie) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void deliver(ClusterMessage message) {
+        for (Consumer<ClusterMessage> listener : listeners) {
+            try {
+                listener.accept(message);
+            } catch (Exception ignored) {}
+        }
+    }
+
+    private String write(ClusterMessage message) {
+        try {
+            return mapper.writeValueAsString(message);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        running = false;
+        listenerThread.interrupt();
+    }
+}
@@ -0,0 +1,115 @@
+package com.elbouch.auto.service;
+
+import com.elbouch.auto.dto.ProductEventDto;
+import com.elbouch.auto.entity.Product;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Product events are recorded with the transaction that caused them and only published once it commits;
+ * a rollback discards them. Committed events wait for a short window and are coalesced per product,
+ * so a burst of writes to one product (e.g. many image uploads) reaches clients as a single event.
+ * Each flushed batch is also handed to the other nodes for their own clients.
+ */
+@Service
+public class ProductEventOutbox {
+
+    private final SseService sseService;
+    private final ClusterSync cluster;
+    private final long windowMillis;
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "product-events-flush");
+        t.setDaemon(true);
+        return t;
+    });
+    // guarded by this, keyed by product id (or type)
+    private final Map<String, ProductEventDto> pending = new LinkedHashMap<>();
+    private boolean flushScheduled;
+
+    public ProductEventOutbox(SseService sseService, ClusterSync cluster, @Value("${app.events.coalesce-millis:250}") long windowMillis) {
+        this.sseService = sseService;
+        this.cluster = cluster;
+        this.windowMillis = windowMillis;
+    }
+
+    public void record(String type, Product p) {
+        record(type, p.getId().toString(), p.getSlug());
+    }
+
+    /** An event about no single product (e.g. a bulk import) has a null id and is coalesced by type. */
+    public void record(String type, String id, String slug) {
+        ProductEventDto event = new ProductEventDto(type, id, slug, System.currentTimeMillis());
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            enqueue(List.of(event));
+            return;
+        }
+        @SuppressWarnings("unchecked")
+        Map<String, ProductEventDto> recorded = (Map<String, ProductEventDto>) TransactionSynchronizationManager.getResource(this);
+        if (recorded == null) {
+            Map<String, ProductEventDto> events = new LinkedHashMap<>();
+            TransactionSynchronizationManager.bindResource(this, events);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(ProductEventOutbox.this);
+                    if (status == STATUS_COMMITTED) enqueue(events.values());
+                }
+            });
+            recorded = events;
+        }
+        recorded.merge(key(event), event, ProductEventOutbox::coalesce);
+    }
+
+    private static String key(ProductEventDto event) {
+        return event.id() != null ? event.id() : event.type();
+    }
+
+    // A client that never saw the creation still needs "created"; a deletion always wins
+    private static ProductEventDto coalesce(ProductEventDto earlier, ProductEventDto later) {
+        if (!"product.deleted".equals(later.type()) && "product.created".equals(earlier.type())) {
+            return new ProductEventDto(earlier.type(), later.id(), later.slug(), later.timestamp());
+        }
+        return later;
+    }
+
+    private synchronized void enqueue(Collection<ProductEventDto> events) {
+        if (events.isEmpty()) return;
+        for (ProductEventDto event : events) {
+            pending.merge(key(event), event, ProductEventOutbox::coalesce);
+        }
+        if (!flushScheduled) {
+            flushScheduled = true;
+            flusher.schedule(this::flush, windowMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void flush() {
+        List<ProductEventDto> batch;
+        synchronized (this) {
+            batch = new ArrayList<>(pending.values());
+            pending.clear();
+            flushScheduled = false;
+        }
+        for (ProductEventDto event : batch) {
+            try {
+                sseService.broadcast(event);
+            } catch (Exception e) {
+                System.err.println("Error broadcasting " + event.type() + " for " + key(event) + ": " + e.getMessage());
+            }
+        }
+        cluster.eventsPublished(batch);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdown();
+    }
+}
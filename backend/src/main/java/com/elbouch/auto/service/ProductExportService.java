@@ -0,0 +1,156 @@
+package com.elbouch.auto.service;
+
+import com.elbouch.auto.dto.ImageDto;
+import com.elbouch.auto.dto.ImageVariantDto;
+import com.elbouch.auto.dto.ProductDto;
+import com.elbouch.auto.util.CsvWriter;
+import com.elbouch.auto.util.JsonUtils;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Full-catalogue dumps for feeds and backups. Products are read through one forward-only query with a
+ * fetch size (a server-side cursor on Postgres, which needs the surrounding transaction), and their
+ * categories, tags and images are loaded one block at a time, so memory use does not grow with the catalogue.
+ * Both formats are accepted back by {@link ProductImportService}.
+ */
+@Service
+public class ProductExportService {
+
+    private static final List<String> CSV_COLUMNS = List.of("name", "slug", "short_description", "description", "categories", "tags",
+            "is_visible", "is_featured", "sort_order", "images", "specs");
+
+    private record Row(UUID id, String name, String slug, String shortDescription, String description,
+                       boolean visible, Boolean featured, Integer sortOrder, String specsJson) {}
+
+    private interface BlockWriter {
+        void write(List<ProductDto> block) throws IOException;
+    }
+
+    private final JdbcTemplate cursor;
+    private final NamedParameterJdbcTemplate jdbc;
+    private final TransactionTemplate readOnly;
+    private final ObjectMapper objectMapper;
+    private final int blockSize;
+
+    public ProductExportService(DataSource dataSource, TransactionTemplate transactionTemplate, ObjectMapper objectMapper,
+                                @Value("${app.export.fetch-size:500}") int fetchSize) {
+        this.cursor = new JdbcTemplate(dataSource);
+        this.cursor.setFetchSize(fetchSize);
+        this.jdbc = new NamedParameterJdbcTemplate(dataSource);
+        this.readOnly = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        this.readOnly.setReadOnly(true);
+        this.objectMapper = objectMapper;
+        this.blockSize = fetchSize;
+    }
+
+    /** One ProductDto per line, as in the public API. */
+    public void writeNdjson(Boolean visible, OutputStream body) throws IOException {
+        BufferedOutputStream out = new BufferedOutputStream(body, 64 * 1024);
+        export(visible, block -> {
+            for (ProductDto dto : block) {
+                out.write(objectMapper.writeValueAsBytes(dto));
+                out.write('\n');
+            }
+            out.flush();
+        });
+        out.flush();
+    }
+
+    /** Categories and tags by slug, image urls with the cover first, specs as a JSON object. */
+    public void writeCsv(Boolean visible, OutputStream body) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(body, StandardCharsets.UTF_8), 64 * 1024);
+        CsvWriter csv = new CsvWriter(writer);
+        csv.write(CSV_COLUMNS);
+        Map<String, String> categorySlugs = new HashMap<>();
+        jdbc.getJdbcTemplate().query("SELECT id, slug FROM categories", rs -> {
+            categorySlugs.put(rs.getString(1), rs.getString(2));
+        });
+        export(visible, block -> {
+            for (ProductDto p : block) {
+                csv.write(Arrays.asList(
+                        p.name(),
+                        p.slug(),
+                        p.shortDescription(),
+                        p.description(),
+                        String.join("|", p.categoryIds().stream().map(id -> categorySlugs.getOrDefault(id, id)).toList()),
+                        String.join("|", p.tags()),
+                        String.valueOf(p.isVisible()),
+                        p.isFeatured() == null ? null : String.valueOf(p.isFeatured()),
+                        p.sortOrder() == null ? null : String.valueOf(p.sortOrder()),
+                        String.join("|", p.images().stream().map(ImageDto::url).toList()),
+                        p.specs().isEmpty() ? null : objectMapper.writeValueAsString(p.specs())
+                ));
+            }
+            writer.flush();
+        });
+        writer.flush();
+    }
+
+    private void export(Boolean visible, BlockWriter writer) {
+        String sql = "SELECT id, name, slug, short_description, description, is_visible, is_featured, sort_order, specs_json FROM products"
+                + (visible == null ? "" : " WHERE is_visible = ?")
+                + " ORDER BY created_at, id";
+        Object[] args = visible == null ? new Object[0] : new Object[]{visible};
+        readOnly.executeWithoutResult(status -> {
+            List<Row> block = new ArrayList<>(blockSize);
+            cursor.query(sql, rs -> {
+                block.add(new Row(rs.getObject(1, UUID.class), rs.getString(2), rs.getString(3), rs.getString(4), rs.getString(5),
+                        rs.getBoolean(6), (Boolean) rs.getObject(7), (Integer) rs.getObject(8), rs.getString(9)));
+                if (block.size() == blockSize) {
+                    writeBlock(block, writer);
+                    block.clear();
+                }
+            }, args);
+            if (!block.isEmpty()) writeBlock(block, writer);
+        });
+    }
+
+    // three IN queries per block instead of three per product
+    private void writeBlock(List<Row> rows, BlockWriter writer) {
+        Map<String, Object> ids = Map.of("ids", rows.stream().map(Row::id).toList());
+        Map<UUID, List<String>> categories = new HashMap<>();
+        jdbc.query("SELECT product_id, category_id FROM product_categories WHERE product_id IN (:ids)", ids, rs -> {
+            categories.computeIfAbsent(rs.getObject(1, UUID.class), k -> new ArrayList<>()).add(rs.getString(2));
+        });
+        Map<UUID, List<String>> tags = new HashMap<>();
+        jdbc.query("SELECT pt.product_id, t.slug FROM product_tags pt JOIN tags t ON t.id = pt.tag_id WHERE pt.product_id IN (:ids)", ids, rs -> {
+            tags.computeIfAbsent(rs.getObject(1, UUID.class), k -> new ArrayList<>()).add(rs.getString(2));
+        });
+        Map<UUID, List<ImageDto>> images = new HashMap<>();
+        jdbc.query("SELECT product_id, url, alt, is_cover, width, height, placeholder, variants_json FROM images WHERE product_id IN (:ids) ORDER BY is_cover DESC", ids, rs -> {
+            images.computeIfAbsent(rs.getObject(1, UUID.class), k -> new ArrayList<>()).add(new ImageDto(
+                    rs.getString(2), rs.getString(3), rs.getBoolean(4), (Integer) rs.getObject(5), (Integer) rs.getObject(6),
+                    rs.getString(7), JsonUtils.toList(rs.getString(8), ImageVariantDto.class)));
+        });
+        List<ProductDto> block = rows.stream().map(r -> new ProductDto(
+                r.id().toString(),
+                r.name(),
+                r.slug(),
+                r.shortDescription(),
+                r.description(),
+                categories.getOrDefault(r.id(), List.of()),
+                tags.getOrDefault(r.id(), List.of()),
+                r.visible(),
+                r.featured(),
+                r.sortOrder(),
+                images.getOrDefault(r.id(), List.of()),
+                JsonUtils.toMap(r.specsJson())
+        )).toList();
+        try {
+            writer.write(block);
+        } catch (IOException e) {
+            // client went away: abandons the query and the transaction
+            throw new UncheckedIOException(e);
+        }
+    }
+}
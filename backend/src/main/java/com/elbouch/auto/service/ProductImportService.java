@@ -0,0 +1,416 @@
+package com.elbouch.auto.service;
+
+import com.elbouch.auto.dto.ImageDto;
+import com.elbouch.auto.dto.ImportReportDto;
+import com.elbouch.auto.dto.ProductDto;
+import com.elbouch.auto.entity.Category;
+import com.elbouch.auto.entity.Image;
+import com.elbouch.auto.entity.Product;
+import com.elbouch.auto.repository.ProductRepository;
+import com.elbouch.auto.util.CsvReader;
+import com.elbouch.auto.util.Mapper;
+import com.elbouch.auto.util.Slugify;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Bulk product creation from NDJSON (one ProductDto per line) or CSV. The input is parsed as it streams in
+ * and written in chunks: slugs are resolved with two queries per chunk, rows go in as JDBC batches, and every
+ * chunk commits on its own, so a bad row is reported without failing the rest. The search index, caches,
+ * other nodes and SSE clients are updated once, at the end.
+ */
+@Service
+public class ProductImportService {
+
+    private static final int MAX_REPORTED_ERRORS = 1000;
+
+    private record Row(long line, ProductDto dto, String error) {}
+
+    private interface RowSource {
+        Row next() throws IOException;
+    }
+
+    private final class Run {
+        final long started = System.currentTimeMillis();
+        // one version of the categories and tags for the whole import
+        final ReferenceData.Snapshot refs = referenceData.snapshot();
+        // slugs known to be taken, from the database or earlier rows of this import
+        final Set<String> taken = new HashSet<>();
+        final List<String> imported = new ArrayList<>();
+        // the index keeps every entry anyway; applying them at the end takes its lock once
+        final List<ProductSearchIndex.Entry> indexed = new ArrayList<>();
+        final List<ImportReportDto.RowError> errors = new ArrayList<>();
+        long failed;
+
+        void fail(long line, String message) {
+            failed++;
+            if (errors.size() < MAX_REPORTED_ERRORS) errors.add(new ImportReportDto.RowError(line, message));
+        }
+    }
+
+    private final ProductRepository productRepository;
+    private final ReferenceData referenceData;
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final CacheManager cacheManager;
+    private final ProductSearchIndex searchIndex;
+    private final CatalogVersions catalogVersions;
+    private final ClusterSync cluster;
+    private final ProductEventOutbox events;
+    private final int chunkSize;
+
+    public ProductImportService(ProductRepository productRepository, ReferenceData referenceData, JdbcTemplate jdbc, TransactionTemplate transactionTemplate, ObjectMapper objectMapper, CacheManager cacheManager, ProductSearchIndex searchIndex, CatalogVersions catalogVersions, ClusterSync cluster, ProductEventOutbox events,
+                                @Value("${app.import.chunk-size:500}") int chunkSize) {
+        this.productRepository = productRepository;
+        this.referenceData = referenceData;
+        this.jdbc = jdbc;
+        this.transactionTemplate = transactionTemplate;
+        this.objectMapper = objectMapper;
+        this.cacheManager = cacheManager;
+        this.searchIndex = searchIndex;
+        this.catalogVersions = catalogVersions;
+        this.cluster = cluster;
+        this.events = events;
+        this.chunkSize = chunkSize;
+    }
+
+    public ImportReportDto importNdjson(InputStream body) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        long[] line = {0};
+        return run(() -> {
+            String text;
+            while ((text = reader.readLine()) != null) {
+                line[0]++;
+                if (text.isBlank()) continue;
+                try {
+                    return new Row(line[0], objectMapper.readValue(text, ProductDto.class), null);
+                } catch (JsonProcessingException e) {
+                    return new Row(line[0], null, "Invalid JSON: " + e.getOriginalMessage());
+                }
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Columns (header names are case and separator insensitive): name, slug, short_description, description,
+     * categories and tags (slugs or ids separated by |), is_visible, is_featured, sort_order, images (urls
+     * separated by |, the first is the cover), specs (a JSON object) and spec.&lt;key&gt; for single spec values.
+     */
+    public ImportReportDto importCsv(InputStream body) throws IOException {
+        CsvReader csv = new CsvReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        List<String> header = csv.next();
+        if (header == null) return run(() -> null);
+        List<String> columns = header.stream().map(ProductImportService::column).toList();
+        return run(() -> {
+            List<String> record;
+            while ((record = csv.next()) != null) {
+                if (record.stream().allMatch(String::isBlank)) continue;
+                try {
+                    return new Row(csv.recordLine(), fromCsv(columns, header, record), null);
+                } catch (IllegalArgumentException | IOException e) {
+                    return new Row(csv.recordLine(), null, e.getMessage());
+                }
+            }
+            return null;
+        });
+    }
+
+    /** Products already in memory or generated on the fly (the synthetic catalogue of load tests); line numbers are positions. */
+    public ImportReportDto importProducts(Iterator<ProductDto> products) throws IOException {
+        long[] position = {0};
+        return run(() -> products.hasNext() ? new Row(++position[0], products.next(), null) : null);
+    }
+
+    private ImportReportDto run(RowSource source) throws IOException {
+        Run run = new Run();
+        List<Row> chunk = new ArrayList<>(chunkSize);
+        try {
+            Row row;
+            while ((row = source.next()) != null) {
+                if (row.error() != null) {
+                    run.fail(row.line(), row.error());
+                    continue;
+                }
+                chunk.add(row);
+                if (chunk.size() == chunkSize) {
+                    write(chunk, run);
+                    chunk.clear();
+                }
+            }
+            write(chunk, run);
+        } finally {
+            // whatever was committed before a failure is published
+            if (!run.imported.isEmpty()) published(run.imported, run.indexed);
+        }
+        return new ImportReportDto(run.imported.size(), run.failed, run.errors, System.currentTimeMillis() - run.started);
+    }
+
+    private void write(List<Row> rows, Run run) {
+        if (rows.isEmpty()) return;
+        List<Product> products = new ArrayList<>();
+        List<Long> lines = new ArrayList<>();
+        for (Row row : rows) {
+            ProductDto dto = row.dto();
+            if (dto.name() == null || dto.name().isBlank()) {
+                run.fail(row.line(), "name is required");
+                continue;
+            }
+            String base = Slugify.slugify(dto.slug() != null && !dto.slug().isBlank() ? dto.slug() : dto.name());
+            if (base.isEmpty()) {
+                run.fail(row.line(), "slug is empty once normalized");
+                continue;
+            }
+            String unknown = unknownReferences(dto, run.refs);
+            if (unknown != null) {
+                run.fail(row.line(), unknown);
+                continue;
+            }
+            Product p = new Product();
+            // the slug is fixed below, once the taken ones are known for the whole chunk
+            Mapper.applyDtoToEntity(withResolvedCategories(dto, base, run), p, run.refs);
+            String tooLong = tooLong(p);
+            if (tooLong != null) {
+                run.fail(row.line(), tooLong);
+                continue;
+            }
+            products.add(p);
+            lines.add(row.line());
+        }
+        assignSlugs(products, run);
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> insert(products));
+            products.forEach(p -> imported(p, run));
+        } catch (RuntimeException e) {
+            // typically a slug taken concurrently; the chunk was rolled back as a whole, so its rows are
+            // written again one by one and only the ones still refused are reported
+            for (int i = 0; i < products.size(); i++) {
+                Product p = products.get(i);
+                try {
+                    transactionTemplate.executeWithoutResult(status -> insert(List.of(p)));
+                    imported(p, run);
+                } catch (RuntimeException rowError) {
+                    run.taken.remove(p.getSlug());
+                    run.fail(lines.get(i), "Not imported: " + NestedExceptionUtils.getMostSpecificCause(rowError).getMessage());
+                }
+            }
+        }
+    }
+
+    private void imported(Product p, Run run) {
+        run.imported.add(p.getSlug());
+        run.indexed.add(searchIndex.entry(p));
+    }
+
+    // column sizes (V1__init.sql), checked here so that one row cannot fail its whole chunk
+    private static String tooLong(Product p) {
+        List<String> problems = new ArrayList<>();
+        check(problems, "name", p.getName(), 255);
+        check(problems, "slug", p.getSlug(), 255);
+        check(problems, "short_description", p.getShortDescription(), 1000);
+        check(problems, "description", p.getDescription(), 10000);
+        check(problems, "specs", p.getSpecsJson(), 20000);
+        for (Image img : p.getImages()) {
+            check(problems, "image url", img.getUrl(), 2000);
+            check(problems, "image alt", img.getAlt(), 1000);
+        }
+        return problems.isEmpty() ? null : "too long: " + String.join(", ", problems);
+    }
+
+    private static void check(List<String> problems, String column, String value, int max) {
+        if (value != null && value.length() > max) problems.add(column + " (max " + max + ")");
+    }
+
+    // Same rule as ProductService: the first free of base, base-1, base-2...
+    private void assignSlugs(List<Product> products, Run run) {
+        Set<String> bases = products.stream().map(Product::getSlug).collect(Collectors.toSet());
+        Set<String> unknown = bases.stream().filter(b -> !run.taken.contains(b)).collect(Collectors.toSet());
+        if (!unknown.isEmpty()) run.taken.addAll(productRepository.findExistingSlugs(unknown));
+        Set<String> numbered = new HashSet<>();
+        Set<String> seen = new HashSet<>();
+        for (Product p : products) {
+            if (run.taken.contains(p.getSlug()) || !seen.add(p.getSlug())) numbered.add(p.getSlug());
+        }
+        if (!numbered.isEmpty()) run.taken.addAll(productRepository.findSlugsWithPrefixes(numbered));
+        for (Product p : products) {
+            String base = p.getSlug();
+            String slug = base;
+            for (int i = 1; run.taken.contains(slug); i++) {
+                slug = base + "-" + i;
+            }
+            run.taken.add(slug);
+            p.setSlug(slug);
+        }
+    }
+
+    private void insert(List<Product> products) {
+        List<Object[]> productRows = new ArrayList<>();
+        List<Object[]> categoryRows = new ArrayList<>();
+        List<Object[]> tagRows = new ArrayList<>();
+        List<Object[]> imageRows = new ArrayList<>();
+        List<Object[]> specRows = new ArrayList<>();
+        for (Product p : products) {
+            UUID id = UUID.randomUUID();
+            p.setId(id);
+            productRows.add(new Object[]{id, p.getName(), p.getSlug(), p.getShortDescription(), p.getDescription(),
+                    p.isVisible(), p.getFeatured(), p.getSortOrder(), p.getSpecsJson(),
+                    // same zone as hibernate.jdbc.time_zone
+                    LocalDateTime.ofInstant(p.getCreatedAt(), ZoneOffset.UTC)});
+            p.getCategories().forEach(c -> categoryRows.add(new Object[]{id, c.getId()}));
+            p.getTags().forEach(t -> tagRows.add(new Object[]{id, t.getId()}));
+            p.getSpecAttributes().forEach(a -> specRows.add(new Object[]{id, a.getSpecKey(), a.getValueText(), a.getValueNumber()}));
+            for (Image img : p.getImages()) {
+                imageRows.add(new Object[]{UUID.randomUUID(), img.getUrl(), img.getAlt(), img.isCover(), id,
+                        img.getWidth(), img.getHeight(), img.getPlaceholder(), img.getVariantsJson()});
+            }
+        }
+        batch("INSERT INTO products (id, name, slug, short_description, description, is_visible, is_featured, sort_order, specs_json, created_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)", productRows);
+        batch("INSERT INTO product_categories (product_id, category_id) VALUES (?, ?)", categoryRows);
+        batch("INSERT INTO product_tags (product_id, tag_id) VALUES (?, ?)", tagRows);
+        batch("INSERT INTO images (id, url, alt, is_cover, product_id, width, height, placeholder, variants_json) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)", imageRows);
+        batch("INSERT INTO product_specs (product_id, spec_key, value_text, value_number) VALUES (?, ?, ?, ?)", specRows);
+    }
+
+    private void batch(String sql, List<Object[]> rows) {
+        if (rows.isEmpty()) return;
+        jdbc.batchUpdate(sql, rows, chunkSize, (ps, row) -> {
+            for (int i = 0; i < row.length; i++) ps.setObject(i + 1, row[i]);
+        });
+    }
+
+    // One invalidation and one event for the whole import instead of one per product
+    private void published(List<String> slugs, List<ProductSearchIndex.Entry> entries) {
+        searchIndex.putAll(entries);
+        Cache cache = cacheManager.getCache("productBySlug");
+        // a miss on a new slug may have been cached as empty
+        if (cache != null) slugs.forEach(cache::evict);
+        catalogVersions.productChanged(slugs.toArray(String[]::new));
+        cluster.catalogueChanged(entries.stream().map(ProductSearchIndex.Entry::id).toList(), slugs);
+        events.record("products.imported", null, null);
+    }
+
+    // Mapper skips categories and tags it does not know; an import reports them instead of dropping them
+    private static String unknownReferences(ProductDto dto, ReferenceData.Snapshot refs) {
+        List<String> problems = new ArrayList<>();
+        List<String> categories = dto.categoryIds() == null ? List.of() : dto.categoryIds().stream()
+                .filter(ref -> !knownCategory(ref, refs))
+                .toList();
+        if (!categories.isEmpty()) problems.add("unknown categories: " + String.join(", ", categories));
+        List<String> tags = dto.tags() == null ? List.of() : dto.tags().stream()
+                .filter(ref -> !refs.tagsBySlug().containsKey(ref))
+                .toList();
+        if (!tags.isEmpty()) problems.add("unknown tags: " + String.join(", ", tags));
+        return problems.isEmpty() ? null : String.join("; ", problems);
+    }
+
+    private static boolean knownCategory(String ref, ReferenceData.Snapshot refs) {
+        if (refs.categoriesBySlug().containsKey(ref)) return true;
+        try {
+            return refs.categoriesById().containsKey(UUID.fromString(ref));
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    // CSV and feeds refer to categories by slug, Mapper expects ids
+    private static ProductDto withResolvedCategories(ProductDto dto, String slug, Run run) {
+        List<String> categoryIds = dto.categoryIds() == null ? null : dto.categoryIds().stream()
+                .map(ref -> {
+                    Category bySlug = run.refs.categoriesBySlug().get(ref);
+                    return bySlug != null ? bySlug.getId().toString() : ref;
+                })
+                .toList();
+        return new ProductDto(dto.id(), dto.name(), slug, dto.shortDescription(), dto.description(), categoryIds,
+                dto.tags(), dto.isVisible(), dto.isFeatured(), dto.sortOrder(), dto.images(), dto.specs());
+    }
+
+    private ProductDto fromCsv(List<String> columns, List<String> header, List<String> record) throws IOException {
+        Map<String, String> values = new HashMap<>();
+        Map<String, Object> specs = new LinkedHashMap<>();
+        for (int i = 0; i < Math.min(columns.size(), record.size()); i++) {
+            String value = record.get(i).trim();
+            if (value.isEmpty()) continue;
+            if (columns.get(i).startsWith("spec.")) {
+                String name = header.get(i).trim();
+                specs.put(name.substring(name.indexOf('.') + 1), specValue(value));
+            } else {
+                values.put(columns.get(i), value);
+            }
+        }
+        if (values.containsKey("specs")) {
+            specs.putAll(objectMapper.readValue(values.get("specs"), new TypeReference<Map<String, Object>>() {}));
+        }
+        List<String> images = list(values.get("images"));
+        return new ProductDto(
+                null,
+                values.get("name"),
+                values.get("slug"),
+                values.get("shortdescription"),
+                values.get("description"),
+                list(values.get("categories")),
+                list(values.get("tags")),
+                bool(values.get("isvisible")),
+                bool(values.get("isfeatured")),
+                values.containsKey("sortorder") ? integer(values.get("sortorder")) : null,
+                images == null ? null : images.stream().map(url -> new ImageDto(url, null, url.equals(images.get(0)), null, null, null, null)).toList(),
+                specs.isEmpty() ? null : specs
+        );
+    }
+
+    private static String column(String name) {
+        String c = name.trim().toLowerCase();
+        if (c.startsWith("spec.") || c.startsWith("specs.")) return "spec.";
+        return c.replaceAll("[\\s_-]", "");
+    }
+
+    private static List<String> list(String value) {
+        if (value == null) return null;
+        return Arrays.stream(value.split("\\|")).map(String::trim).filter(s -> !s.isEmpty()).toList();
+    }
+
+    private static Boolean bool(String value) {
+        if (value == null) return null;
+        return switch (value.toLowerCase()) {
+            case "true", "1", "yes", "y", "oui" -> true;
+            case "false", "0", "no", "n", "non" -> false;
+            default -> throw new IllegalArgumentException("Not a boolean: " + value);
+        };
+    }
+
+    private static Integer integer(String value) {
+        try {
+            return Integer.valueOf(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not an integer: " + value);
+        }
+    }
+
+    // numbers stay numbers in specs_json, as they do when sent as JSON
+    private static Object specValue(String value) {
+        try {
+            return value.contains(".") ? Double.valueOf(value) : Long.valueOf(value);
+        } catch (NumberFormatException e) {
+            return value;
+        }
+    }
+}
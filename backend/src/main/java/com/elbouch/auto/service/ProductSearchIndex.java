@@ -0,0 +1,589 @@
+package com.elbouch.auto.service;
+
+import com.elbouch.auto.dto.FacetsDto;
+import com.elbouch.auto.entity.Category;
+import com.elbouch.auto.entity.Product;
+import com.elbouch.auto.entity.SpecAttribute;
+import com.elbouch.auto.entity.Tag;
+import com.elbouch.auto.repository.ProductRepository;
+import com.elbouch.auto.util.JsonUtils;
+import com.elbouch.auto.util.SpecFilter;
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+
+import java.text.Normalizer;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory inverted index over product name, descriptions, tags, categories and specs.
+ * Terms are lower-cased and accent-folded ("Éclairage" matches "eclairage"), every query
+ * token matches as a prefix, and hits are ranked by field-weighted tf-idf.
+ * Every product also has a dense doc number, with one BitSet per category, tag, spec value and
+ * visible/featured flag, so filters and facet counts are bitwise ANDs and cardinalities.
+ * A category filter or count covers the category's whole subtree.
+ * Built once at startup, then kept current by ProductService writes; a tag or category edit only
+ * re-reads the products carrying it.
+ */
+@Service
+public class ProductSearchIndex implements MeterBinder {
+
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{InCombiningDiacriticalMarks}+");
+    private static final Pattern NON_ALNUM = Pattern.compile("[^\\p{Alnum}]+");
+    private static final float NAME_WEIGHT = 3f;
+    private static final float TAG_WEIGHT = 2f;
+    private static final float CATEGORY_WEIGHT = 1.5f;
+    private static final float SHORT_DESCRIPTION_WEIGHT = 1.5f;
+    private static final float DESCRIPTION_WEIGHT = 1f;
+    private static final float SPECS_WEIGHT = 1f;
+    // a prefix hit ranks below the same term matched whole
+    private static final float PREFIX_FACTOR = 0.6f;
+    private static final int REBUILD_BATCH = 500;
+    private static final int MAX_SPEC_FACETS = 10;
+    private static final int MAX_SPEC_VALUES = 20;
+
+    private final ProductRepository productRepository;
+    private final ReferenceData referenceData;
+    private final ApplicationEventPublisher events;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private State state = new State();
+    private volatile boolean ready = false;
+    // writes applied while a rebuild is running, replayed on the new state before it is swapped in
+    private List<Runnable> pendingDuringRebuild = null;
+    private final Object rebuilding = new Object();
+
+    public ProductSearchIndex(ProductRepository productRepository, ReferenceData referenceData, ApplicationEventPublisher events) {
+        this.productRepository = productRepository;
+        this.referenceData = referenceData;
+        this.events = events;
+    }
+
+    /**
+     * Published after the index changed. {@code affected} holds the written product and every product
+     * sharing a tag or category with its old or new version; it is empty when {@code full} (rebuild).
+     */
+    public record Changed(Set<UUID> affected, boolean full) {}
+
+    /** Immutable index entry, built from a managed Product inside the writing transaction. */
+    public record Entry(UUID id, boolean visible, Boolean featured, Integer sortOrder, Instant createdAt,
+                        Set<String> categorySlugs, Set<String> tagSlugs, Map<String, String> specs,
+                        Map<String, Float> terms) {}
+
+    private static final class State {
+        final Map<UUID, Entry> entries = new HashMap<>();
+        final NavigableMap<String, Map<UUID, Float>> postings = new TreeMap<>();
+        // doc numbers are never reused for another product, a rebuild compacts them
+        final Map<UUID, Integer> docIds = new HashMap<>();
+        final List<UUID> docs = new ArrayList<>();
+        final BitSet alive = new BitSet();
+        final BitSet visible = new BitSet();
+        final BitSet featured = new BitSet();
+        final BitSet notFeatured = new BitSet();
+        final Map<String, BitSet> byCategory = new HashMap<>();
+        final Map<String, BitSet> byTag = new HashMap<>();
+        final Map<String, Map<String, BitSet>> bySpec = new HashMap<>();
+
+        void put(Entry e) {
+            remove(e.id());
+            entries.put(e.id(), e);
+            e.terms().forEach((term, weight) -> postings.computeIfAbsent(term, t -> new HashMap<>()).put(e.id(), weight));
+            int doc = docIds.computeIfAbsent(e.id(), id -> {
+                docs.add(id);
+                return docs.size() - 1;
+            });
+            alive.set(doc);
+            visible.set(doc, e.visible());
+            featured.set(doc, Boolean.TRUE.equals(e.featured()));
+            notFeatured.set(doc, Boolean.FALSE.equals(e.featured()));
+            e.categorySlugs().forEach(slug -> byCategory.computeIfAbsent(slug, k -> new BitSet()).set(doc));
+            e.tagSlugs().forEach(slug -> byTag.computeIfAbsent(slug, k -> new BitSet()).set(doc));
+            e.specs().forEach((key, value) -> bySpec.computeIfAbsent(key, k -> new HashMap<>())
+                    .computeIfAbsent(value, v -> new BitSet()).set(doc));
+        }
+
+        void remove(UUID id) {
+            Entry old = entries.remove(id);
+            if (old == null) return;
+            for (String term : old.terms().keySet()) {
+                Map<UUID, Float> docs = postings.get(term);
+                if (docs == null) continue;
+                docs.remove(id);
+                if (docs.isEmpty()) postings.remove(term);
+            }
+            int doc = docIds.get(id);
+            alive.clear(doc);
+            visible.clear(doc);
+            featured.clear(doc);
+            notFeatured.clear(doc);
+            old.categorySlugs().forEach(slug -> clear(byCategory, slug, doc));
+            old.tagSlugs().forEach(slug -> clear(byTag, slug, doc));
+            old.specs().forEach((key, value) -> {
+                Map<String, BitSet> values = bySpec.get(key);
+                if (values == null) return;
+                clear(values, value, doc);
+                if (values.isEmpty()) bySpec.remove(key);
+            });
+        }
+
+        private static void clear(Map<String, BitSet> sets, String key, int doc) {
+            BitSet bits = sets.get(key);
+            if (bits == null) return;
+            bits.clear(doc);
+            if (bits.isEmpty()) sets.remove(key);
+        }
+
+        BitSet filter(Set<String> categorySlugs, Set<String> tagSlugs, Boolean visibleFilter, Boolean featuredFilter, List<SpecFilter> specFilters) {
+            BitSet bits = (BitSet) alive.clone();
+            if (visibleFilter != null) {
+                if (visibleFilter) bits.and(visible); else bits.andNot(visible);
+            }
+            if (featuredFilter != null) bits.and(featuredFilter ? featured : notFeatured);
+            if (categorySlugs != null) bits.and(inCategories(categorySlugs));
+            if (tagSlugs != null) {
+                BitSet any = new BitSet();
+                tagSlugs.forEach(slug -> { BitSet t = byTag.get(slug); if (t != null) any.or(t); });
+                bits.and(any);
+            }
+            if (specFilters != null) specFilters.forEach(f -> bits.and(matching(f)));
+            return bits;
+        }
+
+        // values are few per key, so each is normalized and tested rather than indexed a second time
+        BitSet matching(SpecFilter f) {
+            BitSet any = new BitSet();
+            bySpec.getOrDefault(f.key(), Map.of()).forEach((value, docs) -> {
+                String text = SpecAttribute.normalize(value);
+                if (f.matches(text, SpecAttribute.number(text))) any.or(docs);
+            });
+            return any;
+        }
+
+        BitSet inCategories(Set<String> categorySlugs) {
+            BitSet any = new BitSet();
+            categorySlugs.forEach(slug -> { BitSet c = byCategory.get(slug); if (c != null) any.or(c); });
+            return any;
+        }
+
+        // products sharing at least one tag or category with the entry
+        BitSet neighbourhood(Entry e) {
+            BitSet bits = new BitSet();
+            e.tagSlugs().forEach(slug -> { BitSet t = byTag.get(slug); if (t != null) bits.or(t); });
+            e.categorySlugs().forEach(slug -> { BitSet c = byCategory.get(slug); if (c != null) bits.or(c); });
+            return bits;
+        }
+
+        Set<UUID> idsOf(BitSet bits) {
+            Set<UUID> ids = new HashSet<>();
+            bits.stream().forEach(doc -> ids.add(docs.get(doc)));
+            return ids;
+        }
+
+        BitSet bitsOf(Collection<UUID> ids) {
+            BitSet bits = new BitSet();
+            ids.forEach(id -> bits.set(docIds.get(id)));
+            return bits;
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    @Timed("catalogue.index.rebuild")
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        // one at a time (startup and a cluster resync can overlap): each swaps pendingDuringRebuild
+        synchronized (rebuilding) {
+            lock.writeLock().lock();
+            try {
+                pendingDuringRebuild = new ArrayList<>();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            State fresh = new State();
+            Sort sort = Sort.by("id");
+            int page = 0;
+            Page<UUID> ids;
+            do {
+                ids = productRepository.findIds(null, PageRequest.of(page++, REBUILD_BATCH, sort));
+                if (ids.isEmpty()) break;
+                for (Product p : productRepository.findAllWithAllByIdIn(ids.getContent())) {
+                    fresh.put(entry(p));
+                }
+            } while (ids.hasNext());
+            lock.writeLock().lock();
+            try {
+                state = fresh;
+                pendingDuringRebuild.forEach(Runnable::run);
+                pendingDuringRebuild = null;
+                ready = true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        events.publishEvent(new Changed(Set.of(), true));
+    }
+
+    /** Must be called while the product's tags and categories are loaded. */
+    public Entry entry(Product p) {
+        Map<String, Float> terms = new HashMap<>();
+        addTerms(terms, p.getName(), NAME_WEIGHT);
+        addTerms(terms, p.getShortDescription(), SHORT_DESCRIPTION_WEIGHT);
+        addTerms(terms, p.getDescription(), DESCRIPTION_WEIGHT);
+        for (Tag t : p.getTags()) {
+            addTerms(terms, t.getName(), TAG_WEIGHT);
+        }
+        for (Category c : p.getCategories()) {
+            addTerms(terms, c.getName(), CATEGORY_WEIGHT);
+        }
+        Map<String, String> specs = new HashMap<>();
+        JsonUtils.toMap(p.getSpecsJson()).forEach((k, v) -> {
+            addTerms(terms, k, SPECS_WEIGHT);
+            if (v != null) addTerms(terms, String.valueOf(v), SPECS_WEIGHT);
+            // only scalar values make sensible facets
+            if (v instanceof String || v instanceof Number || v instanceof Boolean) specs.put(k, String.valueOf(v));
+        });
+        return new Entry(
+                p.getId(),
+                p.isVisible(),
+                p.getFeatured(),
+                p.getSortOrder(),
+                p.getCreatedAt(),
+                p.getCategories().stream().map(Category::getSlug).collect(Collectors.toUnmodifiableSet()),
+                p.getTags().stream().map(Tag::getSlug).collect(Collectors.toUnmodifiableSet()),
+                Map.copyOf(specs),
+                Map.copyOf(terms)
+        );
+    }
+
+    public void put(Entry e) {
+        write(e.id(), s -> s.put(e));
+    }
+
+    /** Many new products at once (imports): one lock, and related lists are recomputed as after a rebuild. */
+    public void putAll(Collection<Entry> entries) {
+        lock.writeLock().lock();
+        try {
+            for (Entry e : entries) {
+                state.put(e);
+                if (pendingDuringRebuild != null) pendingDuringRebuild.add(() -> state.put(e));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        events.publishEvent(new Changed(Set.of(), true));
+    }
+
+    public void remove(UUID id) {
+        write(id, s -> s.remove(id));
+    }
+
+    /** Indexed products carrying the tag, read before the tag is renamed or deleted. */
+    public Set<UUID> withTag(String slug) {
+        return idsIn(s -> s.byTag.get(slug));
+    }
+
+    /** Indexed products directly in the category (not its subcategories). */
+    public Set<UUID> inCategory(String slug) {
+        return idsIn(s -> s.byCategory.get(slug));
+    }
+
+    private Set<UUID> idsIn(Function<State, BitSet> set) {
+        lock.readLock().lock();
+        try {
+            BitSet bits = set.apply(state);
+            return bits == null ? Set.of() : state.idsOf(bits);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Re-reads the given products and replaces their entries (drops those that no longer exist), after a tag or
+     * category they carry was renamed or deleted, or an import on another node. Unlike {@link #rebuild()},
+     * the cost is in the number of products touched, not the catalogue size.
+     */
+    public void refresh(Collection<UUID> ids) {
+        if (ids.isEmpty()) return;
+        List<UUID> all = List.copyOf(ids);
+        Map<UUID, Entry> entries = new HashMap<>();
+        for (int i = 0; i < all.size(); i += REBUILD_BATCH) {
+            for (Product p : productRepository.findAllWithAllByIdIn(all.subList(i, Math.min(i + REBUILD_BATCH, all.size())))) {
+                entries.put(p.getId(), entry(p));
+            }
+        }
+        Consumer<State> change = s -> all.forEach(id -> {
+            Entry e = entries.get(id);
+            if (e != null) s.put(e); else s.remove(id);
+        });
+        Set<UUID> affected;
+        lock.writeLock().lock();
+        try {
+            BitSet neighbours = new BitSet();
+            all.forEach(id -> neighbours.or(neighbourhood(id)));
+            change.accept(state);
+            if (pendingDuringRebuild != null) pendingDuringRebuild.add(() -> change.accept(state));
+            all.forEach(id -> neighbours.or(neighbourhood(id)));
+            affected = state.idsOf(neighbours);
+            affected.addAll(all);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        events.publishEvent(new Changed(affected, false));
+    }
+
+    private void write(UUID id, Consumer<State> change) {
+        Set<UUID> affected;
+        lock.writeLock().lock();
+        try {
+            BitSet before = neighbourhood(id);
+            change.accept(state);
+            if (pendingDuringRebuild != null) pendingDuringRebuild.add(() -> change.accept(state));
+            before.or(neighbourhood(id));
+            affected = state.idsOf(before);
+            affected.add(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        events.publishEvent(new Changed(affected, false));
+    }
+
+    // caller holds a lock
+    private BitSet neighbourhood(UUID id) {
+        Entry e = state.entries.get(id);
+        return e == null ? new BitSet() : state.neighbourhood(e);
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return state.entries.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("catalogue.index.size", this, ProductSearchIndex::size).tag("index", "search")
+                .description("Products held by an in-memory catalogue index")
+                .register(registry);
+    }
+
+    public Set<UUID> ids() {
+        lock.readLock().lock();
+        try {
+            return Set.copyOf(state.entries.keySet());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Visible products sharing a tag or category with {@code id}, best first: 3 points per shared tag,
+     * 2 per shared category, plus up to 1 for the share of identical spec values.
+     */
+    public List<UUID> neighbours(UUID id, int limit) {
+        lock.readLock().lock();
+        try {
+            Entry ref = state.entries.get(id);
+            if (ref == null) return List.of();
+            BitSet candidates = state.neighbourhood(ref);
+            candidates.and(state.visible);
+            candidates.clear(state.docIds.get(id));
+            Map<UUID, Double> scores = new HashMap<>();
+            candidates.stream().forEach(doc -> {
+                Entry other = state.entries.get(state.docs.get(doc));
+                scores.put(other.id(), relatedness(ref, other));
+            });
+            return scores.keySet().stream()
+                    .map(state.entries::get)
+                    .sorted(Comparator.<Entry>comparingDouble(e -> -scores.get(e.id()))
+                            .thenComparing(Entry::sortOrder, Comparator.nullsLast(Comparator.naturalOrder()))
+                            .thenComparing(Entry::createdAt, Comparator.nullsLast(Comparator.reverseOrder()))
+                            .thenComparing(Entry::id))
+                    .limit(limit)
+                    .map(Entry::id)
+                    .toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static double relatedness(Entry a, Entry b) {
+        long tags = a.tagSlugs().stream().filter(b.tagSlugs()::contains).count();
+        long categories = a.categorySlugs().stream().filter(b.categorySlugs()::contains).count();
+        int specKeys = Math.max(a.specs().size(), b.specs().size());
+        long sameSpecs = a.specs().entrySet().stream().filter(s -> s.getValue().equals(b.specs().get(s.getKey()))).count();
+        return 3.0 * tags + 2.0 * categories + (specKeys == 0 ? 0 : (double) sameSpecs / specKeys);
+    }
+
+    /**
+     * Ranked ids of products matching every token of {@code q} (as prefix) and the given filters,
+     * best match first, then sortOrder / createdAt like the SQL listing.
+     */
+    public List<UUID> search(String q, String categorySlug, String tagsCsv, Boolean visible, Boolean featured, List<SpecFilter> specs) {
+        List<String> tokens = tokenize(q);
+        if (tokens.isEmpty()) return List.of();
+        lock.readLock().lock();
+        try {
+            Map<UUID, Float> scores = score(tokens);
+            if (scores.isEmpty()) return List.of();
+            BitSet allowed = state.filter(subtree(categorySlug), tagSlugs(tagsCsv), visible, featured, specs);
+            return scores.keySet().stream()
+                    .filter(id -> allowed.get(state.docIds.get(id)))
+                    .map(state.entries::get)
+                    .sorted(Comparator.<Entry>comparingDouble(e -> -scores.get(e.id()))
+                            .thenComparing(Entry::sortOrder, Comparator.nullsLast(Comparator.naturalOrder()))
+                            .thenComparing(Entry::createdAt, Comparator.nullsLast(Comparator.reverseOrder()))
+                            .thenComparing(Entry::id))
+                    .map(Entry::id)
+                    .toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Facet counts over the products matching {@code q} (when given) and the listing filters.
+     * Category, tag and spec counts ignore their own filter, so they show what selecting a value would return
+     * (for a category, its whole subtree).
+     */
+    public FacetsDto facets(String q, String categorySlug, String tagsCsv, Boolean visible, Boolean featured, List<SpecFilter> specFilters) {
+        Set<String> tagSlugs = tagSlugs(tagsCsv);
+        Set<String> categorySlugs = subtree(categorySlug);
+        ReferenceData.Snapshot refs = referenceData.snapshot();
+        List<String> tokens = tokenize(q);
+        lock.readLock().lock();
+        try {
+            BitSet text = tokens.isEmpty() ? null : state.bitsOf(score(tokens).keySet());
+            BitSet all = restrict(state.filter(categorySlugs, tagSlugs, visible, featured, specFilters), text);
+            BitSet withoutCategory = restrict(state.filter(null, tagSlugs, visible, featured, specFilters), text);
+            BitSet withoutTags = restrict(state.filter(categorySlugs, null, visible, featured, specFilters), text);
+
+            Map<String, Map<String, Integer>> specs = new LinkedHashMap<>();
+            state.bySpec.entrySet().stream()
+                    .map(e -> Map.entry(e.getKey(), counts(e.getValue(), withoutSpec(e.getKey(), specFilters, all, text,
+                            categorySlugs, tagSlugs, visible, featured), MAX_SPEC_VALUES)))
+                    .filter(e -> !e.getValue().isEmpty())
+                    .sorted(Comparator.comparingInt((Map.Entry<String, Map<String, Integer>> e) ->
+                            -e.getValue().values().stream().mapToInt(Integer::intValue).sum()))
+                    .limit(MAX_SPEC_FACETS)
+                    .forEach(e -> specs.put(e.getKey(), e.getValue()));
+            return new FacetsDto(
+                    counts(subtrees(refs), withoutCategory, Integer.MAX_VALUE),
+                    counts(state.byTag, withoutTags, Integer.MAX_VALUE),
+                    specs
+            );
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // caller holds the read lock; the matching set without the filter on this spec key, if there is one
+    private BitSet withoutSpec(String key, List<SpecFilter> specFilters, BitSet all, BitSet text,
+                               Set<String> categorySlugs, Set<String> tagSlugs, Boolean visible, Boolean featured) {
+        if (specFilters == null || specFilters.stream().noneMatch(f -> f.key().equals(key))) return all;
+        List<SpecFilter> others = specFilters.stream().filter(f -> !f.key().equals(key)).toList();
+        return restrict(state.filter(categorySlugs, tagSlugs, visible, featured, others), text);
+    }
+
+    // caller holds the read lock
+    private Map<UUID, Float> score(List<String> tokens) {
+        Map<UUID, Float> scores = null;
+        int n = Math.max(state.entries.size(), 1);
+        for (String token : tokens) {
+            Map<UUID, Float> tokenScores = new HashMap<>();
+            for (var posting : state.postings.subMap(token, true, token + Character.MAX_VALUE, false).entrySet()) {
+                Map<UUID, Float> docs = posting.getValue();
+                float idf = (float) Math.log(1 + (double) n / docs.size());
+                float factor = posting.getKey().equals(token) ? idf : idf * PREFIX_FACTOR;
+                docs.forEach((id, weight) -> tokenScores.merge(id, weight * factor, Float::sum));
+            }
+            if (scores == null) {
+                scores = tokenScores;
+            } else {
+                scores.keySet().retainAll(tokenScores.keySet());
+                for (var e : scores.entrySet()) e.setValue(e.getValue() + tokenScores.get(e.getKey()));
+            }
+            if (scores.isEmpty()) break;
+        }
+        return scores == null ? Map.of() : scores;
+    }
+
+    private static BitSet restrict(BitSet bits, BitSet text) {
+        if (text != null) bits.and(text);
+        return bits;
+    }
+
+    // non-zero counts, highest first
+    private static Map<String, Integer> counts(Map<String, BitSet> sets, BitSet matching, int limit) {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        sets.entrySet().stream()
+                .map(e -> {
+                    BitSet bits = (BitSet) e.getValue().clone();
+                    bits.and(matching);
+                    return Map.entry(e.getKey(), bits.cardinality());
+                })
+                .filter(e -> e.getValue() > 0)
+                .sorted(Map.Entry.<String, Integer>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                .limit(limit)
+                .forEach(e -> counts.put(e.getKey(), e.getValue()));
+        return counts;
+    }
+
+    private Set<String> subtree(String categorySlug) {
+        return categorySlug == null || categorySlug.isBlank() ? null : referenceData.snapshot().tree().subtreeSlugs(categorySlug);
+    }
+
+    // caller holds the read lock; one set per category with the products of its whole subtree,
+    // so a parent with no products of its own still counts its children's
+    private Map<String, BitSet> subtrees(ReferenceData.Snapshot refs) {
+        Map<String, BitSet> sets = new HashMap<>(state.byCategory);
+        for (String slug : refs.categoriesBySlug().keySet()) {
+            sets.put(slug, state.inCategories(refs.tree().subtreeSlugs(slug)));
+        }
+        return sets;
+    }
+
+    // "a, b" as the SQL listing reads it
+    private static Set<String> tagSlugs(String tagsCsv) {
+        if (tagsCsv == null) return null;
+        Set<String> slugs = Arrays.stream(tagsCsv.split(",")).map(String::trim).filter(t -> !t.isEmpty())
+                .collect(Collectors.toSet());
+        return slugs.isEmpty() ? null : slugs;
+    }
+
+    public static String fold(String text) {
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        return DIACRITICS.matcher(decomposed).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+
+    static List<String> tokenize(String text) {
+        if (text == null || text.isBlank()) return List.of();
+        return Arrays.stream(NON_ALNUM.split(fold(text)))
+                .filter(t -> !t.isEmpty())
+                .toList();
+    }
+
+    private static void addTerms(Map<String, Float> terms, String text, float weight) {
+        for (String token : tokenize(text)) {
+            terms.merge(token, weight, Float::sum);
+        }
+    }
+}
@@ -1,23 +1,25 @@
 package com.elbouch.auto.service;
 
+import com.elbouch.auto.dto.FacetsDto;
 import com.elbouch.auto.dto.ProductDto;
-import com.elbouch.auto.dto.ProductEventDto;
-import com.elbouch.auto.entity.Category;
 import com.elbouch.auto.entity.Image;
 import com.elbouch.auto.entity.Product;
-import com.elbouch.auto.entity.Tag;
-import com.elbouch.auto.repository.CategoryRepository;
 import com.elbouch.auto.repository.ProductRepository;
-import com.elbouch.auto.repository.TagRepository;
 import com.elbouch.auto.util.Mapper;
+import com.elbouch.auto.util.ProductCursor;
 import com.elbouch.auto.util.ProductSpecifications;
 import com.elbouch.auto.util.Slugify;
-import org.springframework.cache.annotation.CacheEvict;
+import com.elbouch.auto.util.SpecFilter;
+import io.micrometer.core.annotation.Timed;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.domain.*;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.util.*;
 import java.util.stream.Collectors;
@@ -25,104 +27,229 @@ import java.util.stream.Collectors;
 @Service
 public class ProductService {
 
+    // id breaks ties so offset pages and keyset cursors are deterministic
+    private static final Sort LISTING_SORT = Sort.by(
+            Sort.Order.asc("sortOrder").nullsLast(), Sort.Order.desc("createdAt"), Sort.Order.asc("id"));
+
+    /** One cursor page: {@code next} is null on the last page, {@code total} only when requested. */
+    public record Window(List<Product> content, String next, Long total) {}
+
     private final ProductRepository productRepository;
-    private final CategoryRepository categoryRepository;
-    private final TagRepository tagRepository;
-    private final SseService sseService;
+    private final ReferenceData referenceData;
+    private final ProductEventOutbox events;
+    private final CacheManager cacheManager;
+    private final ProductSearchIndex searchIndex;
+    private final RelatedProductsIndex relatedIndex;
+    private final CatalogVersions catalogVersions;
+    private final ClusterSync cluster;
 
-    public ProductService(ProductRepository productRepository, CategoryRepository categoryRepository, TagRepository tagRepository, SseService sseService) {
+    public ProductService(ProductRepository productRepository, ReferenceData referenceData, ProductEventOutbox events, CacheManager cacheManager, ProductSearchIndex searchIndex, RelatedProductsIndex relatedIndex, CatalogVersions catalogVersions, ClusterSync cluster) {
         this.productRepository = productRepository;
-        this.categoryRepository = categoryRepository;
-        this.tagRepository = tagRepository;
-        this.sseService = sseService;
+        this.referenceData = referenceData;
+        this.events = events;
+        this.cacheManager = cacheManager;
+        this.searchIndex = searchIndex;
+        this.relatedIndex = relatedIndex;
+        this.catalogVersions = catalogVersions;
+        this.cluster = cluster;
     }
 
+    @Timed("catalogue.products")
     @Transactional(readOnly = true)
-    public Page<Product> search(String search, String categorySlug, String tagsCsv, Boolean visible, Boolean featured, int page, int perPage) {
-        Specification<Product> spec = Specification.<Product>where(null)
+    public Page<Product> search(String search, String categorySlug, String tagsCsv, Boolean visible, Boolean featured, List<SpecFilter> specs, int page, int perPage) {
+        Pageable pageable = PageRequest.of(Math.max(page - 1, 0), Math.min(perPage, 50));
+        if (search != null && !search.isBlank() && searchIndex.isReady()) {
+            // full-text queries are resolved and ranked by the index, SQL only loads the page
+            List<UUID> hits = searchIndex.search(search, categorySlug, tagsCsv, visible, featured, specs);
+            int from = (int) Math.min(pageable.getOffset(), hits.size());
+            List<UUID> ids = hits.subList(from, Math.min(from + pageable.getPageSize(), hits.size()));
+            return new PageImpl<>(loadInOrder(ids), pageable, hits.size());
+        }
+        Specification<Product> spec = filters(search, categorySlug, tagsCsv, visible, featured, specs);
+        return findPage(spec, PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), LISTING_SORT));
+    }
+
+    // Cursor pagination: seeks past the last (sortOrder, createdAt, id) instead of OFFSET,
+    // and only counts when asked, so every page costs the same as the first
+    @Timed("catalogue.products")
+    @Transactional(readOnly = true)
+    public Window scroll(String search, String categorySlug, String tagsCsv, Boolean visible, Boolean featured, List<SpecFilter> specs, ProductCursor cursor, int perPage, boolean withTotal) {
+        int limit = Math.max(Math.min(perPage, 50), 1);
+        if (search != null && !search.isBlank() && searchIndex.isReady()) {
+            // ranked hits live in memory, an offset into them is already constant time
+            if (cursor != null && cursor.isKeyset()) throw new IllegalArgumentException("Invalid cursor");
+            List<UUID> hits = searchIndex.search(search, categorySlug, tagsCsv, visible, featured, specs);
+            int from = cursor == null ? 0 : Math.min(cursor.offset(), hits.size());
+            int to = Math.min(from + limit, hits.size());
+            String next = to < hits.size() ? ProductCursor.atOffset(to).encode() : null;
+            return new Window(loadInOrder(hits.subList(from, to)), next, withTotal ? (long) hits.size() : null);
+        }
+        if (cursor != null && !cursor.isKeyset()) throw new IllegalArgumentException("Invalid cursor");
+        Specification<Product> spec = filters(search, categorySlug, tagsCsv, visible, featured, specs);
+        Specification<Product> page = cursor == null ? spec
+                : spec.and(ProductSpecifications.after(cursor.sortOrder(), cursor.createdAt(), cursor.id()));
+        List<UUID> ids = productRepository.findIds(page, LISTING_SORT, limit + 1);
+        boolean more = ids.size() > limit;
+        List<Product> content = loadInOrder(more ? ids.subList(0, limit) : ids);
+        String next = more && !content.isEmpty() ? ProductCursor.after(content.get(content.size() - 1)).encode() : null;
+        return new Window(content, next, withTotal ? productRepository.countDistinct(spec) : null);
+    }
+
+    private Specification<Product> filters(String search, String categorySlug, String tagsCsv, Boolean visible, Boolean featured, List<SpecFilter> specs) {
+        return Specification.<Product>where(null)
                 .and(ProductSpecifications.search(search))
-                .and(ProductSpecifications.categorySlug(categorySlug))
+                .and(ProductSpecifications.categoryIn(categorySlug == null || categorySlug.isBlank() ? null
+                        : referenceData.snapshot().tree().subtreeIds(categorySlug)))
                 .and(ProductSpecifications.tagsCsv(tagsCsv))
                 .and(ProductSpecifications.visible(visible))
-                .and(ProductSpecifications.featured(featured));
-        Sort sort = Sort.by(Sort.Order.asc("sortOrder").nullsLast(), Sort.Order.desc("createdAt"));
-        Pageable pageable = PageRequest.of(Math.max(page - 1, 0), Math.min(perPage, 50), sort);
-        return productRepository.findAll(spec, pageable);
+                .and(ProductSpecifications.featured(featured))
+                .and(ProductSpecifications.specs(specs));
     }
 
-    @Cacheable(value = "productBySlug", key = "#slug")
+    // Counts come from the in-memory index, no per-facet SQL; empty until the first index build
+    @Timed("catalogue.products")
+    public Optional<FacetsDto> facets(String search, String categorySlug, String tagsCsv, Boolean visible, Boolean featured, List<SpecFilter> specs) {
+        if (!searchIndex.isReady()) return Optional.empty();
+        return Optional.of(searchIndex.facets(search, categorySlug, tagsCsv, visible, featured, specs));
+    }
+
+    // Two-phase paging: ids are paged in SQL, then images/categories/tags are fetched for that page only.
+    // A fetch-joined findAll(spec, pageable) would make Hibernate paginate the whole result in memory.
+    private Page<Product> findPage(Specification<Product> spec, Pageable pageable) {
+        Page<UUID> ids = productRepository.findIds(spec, pageable);
+        return new PageImpl<>(loadInOrder(ids.getContent()), pageable, ids.getTotalElements());
+    }
+
+    private List<Product> loadInOrder(List<UUID> ids) {
+        if (ids.isEmpty()) return List.of();
+        Map<UUID, Product> byId = productRepository.findAllWithAllByIdIn(ids).stream()
+                .collect(Collectors.toMap(Product::getId, p -> p));
+        return ids.stream().map(byId::get).filter(Objects::nonNull).toList();
+    }
+
+    // Timed apart from the queries: for products returned by search/scroll/related, associations are already loaded
+    @Timed("catalogue.mapping")
+    public List<ProductDto> toDtos(List<Product> products) {
+        return products.stream().map(Mapper::toDto).toList();
+    }
+
+    // Caches the mapped read model, so a hit does no entity mapping or specs JSON parsing
+    @Cacheable(value = "productBySlug", key = "#slug", sync = true)
     @Transactional(readOnly = true)
-    public Optional<Product> findBySlug(String slug) {
-        return productRepository.findBySlugWithAll(slug);
+    public Optional<ProductDto> findBySlug(String slug) {
+        return productRepository.findBySlugWithAll(slug).map(Mapper::toDto);
     }
 
+    @Timed("catalogue.products")
     @Transactional(readOnly = true)
-    public List<Product> related(Product ref, int limit) {
-        Set<String> tagSlugs = ref.getTags().stream().map(Tag::getSlug).collect(Collectors.toSet());
-        Set<String> catSlugs = ref.getCategories().stream().map(Category::getSlug).collect(Collectors.toSet());
-        Specification<Product> spec = Specification.where(ProductSpecifications.tagsCsv(String.join(",", tagSlugs)))
-                .or(ProductSpecifications.categorySlug(catSlugs.stream().findFirst().orElse(null)))
-                .and((root, query, cb) -> cb.notEqual(root.get("id"), ref.getId()));
-        Page<Product> page = productRepository.findAll(spec, PageRequest.of(0, limit));
+    public List<Product> related(ProductDto ref, int limit) {
+        if (relatedIndex.isReady()) {
+            // precomputed ranking, SQL only loads the listed products by id
+            return loadInOrder(relatedIndex.related(UUID.fromString(ref.id()), limit));
+        }
+        String tagsCsv = ref.tags() == null ? null : String.join(",", ref.tags());
+        String categoryId = ref.categoryIds() == null ? null : ref.categoryIds().stream().findFirst().orElse(null);
+        UUID refId = UUID.fromString(ref.id());
+        Specification<Product> spec = Specification.where(ProductSpecifications.tagsCsv(tagsCsv))
+                .or(ProductSpecifications.categoryId(categoryId == null ? null : UUID.fromString(categoryId)))
+                .and((root, query, cb) -> cb.notEqual(root.get("id"), refId));
+        Page<Product> page = findPage(spec, PageRequest.of(0, limit));
         return page.getContent();
     }
 
     @Transactional
-    @CacheEvict(value = {"productBySlug", "categories"}, allEntries = true)
     public Product create(ProductDto dto) {
         Product p = new Product();
         apply(dto, p);
         ensureSingleCover(p);
         p = productRepository.save(p);
-        try {
-            sseService.broadcast(new ProductEventDto("product.created", p.getId().toString(), p.getSlug(), System.currentTimeMillis()));
-        } catch (Exception ignored) {}
-
+        reindex(p);
+        // a miss on this slug may have been cached as empty
+        changed(p.getId(), p.getSlug());
+        events.record("product.created", p);
         return p;
     }
     
     @Transactional
-    @CacheEvict(value = {"productBySlug", "categories"}, allEntries = true)
     public void broadcastImageUpdate(UUID productId) {
         productRepository.findById(productId).ifPresent(p -> {
-            try {
-                sseService.broadcast(new ProductEventDto("image.updated", p.getId().toString(), p.getSlug(), System.currentTimeMillis()));
-            } catch (Exception ignored) {}
-
+            changed(p.getId(), p.getSlug());
+            events.record("image.updated", p);
         });
     }
 
     @Transactional
-    @CacheEvict(value = {"productBySlug", "categories"}, allEntries = true)
     public Product update(UUID id, ProductDto dto) {
         Product p = productRepository.findByIdWithAll(id).orElseThrow();
+        String oldSlug = p.getSlug();
         apply(dto, p);
         ensureSingleCover(p);
         p = productRepository.save(p);
-        try {
-            sseService.broadcast(new ProductEventDto("product.updated", p.getId().toString(), p.getSlug(), System.currentTimeMillis()));
-        } catch (Exception ignored) {}
-
+        reindex(p);
+        changed(p.getId(), oldSlug, p.getSlug());
+        events.record("product.updated", p);
         return p;
     }
 
     @Transactional
-    @CacheEvict(value = {"productBySlug", "categories"}, allEntries = true)
     public void delete(UUID id) {
         productRepository.findById(id).ifPresent(p -> {
             productRepository.delete(p);
-            try {
-                sseService.broadcast(new ProductEventDto("product.deleted", p.getId().toString(), p.getSlug(), System.currentTimeMillis()));
-            } catch (Exception ignored) {}
+            UUID deletedId = p.getId();
+            afterCommit(() -> searchIndex.remove(deletedId));
+            changed(p.getId(), p.getSlug());
+            events.record("product.deleted", p);
+        });
+    }
 
+    // Evicts only the affected slugs and bumps their ETag versions, after commit so a concurrent
+    // miss cannot re-cache the old row. Registered after reindex(), so a new ETag never serves old index data.
+    // Other nodes are told to do the same once the transaction is completely over.
+    private void changed(UUID id, String... slugs) {
+        Cache cache = cacheManager.getCache("productBySlug");
+        afterCommit(() -> {
+            for (String slug : slugs) {
+                if (slug != null && cache != null) cache.evict(slug);
+            }
+            catalogVersions.productChanged(slugs);
         });
+        afterCompletion(() -> cluster.productChanged(id, slugs));
     }
 
-    private void apply(ProductDto dto, Product p) {
-        // build helper maps
-        Map<UUID, Category> catMap = categoryRepository.findAll().stream().collect(Collectors.toMap(Category::getId, c -> c));
-        Map<String, Tag> tagBySlug = tagRepository.findAll().stream().collect(Collectors.toMap(Tag::getSlug, t -> t));
+    // The entry is built now, while tags/categories are loaded, and published once the write is visible
+    private void reindex(Product p) {
+        ProductSearchIndex.Entry entry = searchIndex.entry(p);
+        afterCommit(() -> searchIndex.put(entry));
+    }
 
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    // only once committed
+    private void afterCompletion(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_COMMITTED) action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private void apply(ProductDto dto, Product p) {
         // generate unique slug if needed
         String baseSlug = Slugify.slugify(dto.slug() != null && !dto.slug().isBlank() ? dto.slug() : dto.name());
         String uniqueSlug = baseSlug;
@@ -134,7 +261,7 @@ public class ProductService {
                 dto.id(), dto.name(), uniqueSlug, dto.shortDescription(), dto.description(),
                 dto.categoryIds(), dto.tags(), dto.isVisible(), dto.isFeatured(), dto.sortOrder(), dto.images(), dto.specs()
         );
-        Mapper.applyDtoToEntity(withSlug, p, catMap, tagBySlug);
+        Mapper.applyDtoToEntity(withSlug, p, referenceData.snapshot());
     }
 
     private void ensureSingleCover(Product p) {
@@ -0,0 +1,114 @@
+package com.elbouch.auto.service;
+
+import com.elbouch.auto.entity.Category;
+import com.elbouch.auto.entity.Tag;
+import com.elbouch.auto.repository.CategoryRepository;
+import com.elbouch.auto.repository.TagRepository;
+import com.elbouch.auto.util.CategoryTree;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Categories and tags change rarely and are read on every product write, admin form and category listing,
+ * so they are served from an in-memory snapshot, along with the category hierarchy built from them.
+ * A snapshot is never modified: a category or tag change loads a new one and swaps it in whole, so
+ * readers always see one consistent version. Its entities are detached copies shared by every thread;
+ * they may be referenced from product associations but must not be modified.
+ */
+@Service
+public class ReferenceData {
+
+    public record Snapshot(
+            long version,
+            List<Category> categories,
+            Map<UUID, Category> categoriesById,
+            Map<String, Category> categoriesBySlug,
+            List<Tag> tags,
+            Map<UUID, Tag> tagsById,
+            Map<String, Tag> tagsBySlug,
+            CategoryTree tree
+    ) {
+        public Optional<Category> category(UUID id) {
+            return Optional.ofNullable(categoriesById.get(id));
+        }
+
+        public Optional<Tag> tag(UUID id) {
+            return Optional.ofNullable(tagsById.get(id));
+        }
+
+        public Optional<Tag> tagBySlug(String slug) {
+            return Optional.ofNullable(tagsBySlug.get(slug));
+        }
+    }
+
+    private final CategoryRepository categoryRepository;
+    private final TagRepository tagRepository;
+    private final TransactionTemplate readOnly;
+    private volatile Snapshot snapshot;
+
+    public ReferenceData(CategoryRepository categoryRepository, TagRepository tagRepository, TransactionTemplate transactionTemplate) {
+        this.categoryRepository = categoryRepository;
+        this.tagRepository = tagRepository;
+        this.readOnly = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        this.readOnly.setReadOnly(true);
+    }
+
+    public Snapshot snapshot() {
+        Snapshot s = snapshot;
+        return s != null ? s : refresh();
+    }
+
+    /** Reloads both sets; called once a category or tag change has committed, here or on another node. */
+    public synchronized Snapshot refresh() {
+        Snapshot current = snapshot;
+        Snapshot fresh = readOnly.execute(status -> {
+            List<Category> categories = categoryRepository.findAll().stream().map(ReferenceData::copy).toList();
+            List<Tag> tags = tagRepository.findAll().stream().map(ReferenceData::copy).toList();
+            return new Snapshot(
+                    current == null ? 1 : current.version() + 1,
+                    categories,
+                    index(categories, Category::getId),
+                    index(categories, Category::getSlug),
+                    tags,
+                    index(tags, Tag::getId),
+                    index(tags, Tag::getSlug),
+                    new CategoryTree(categories)
+            );
+        });
+        snapshot = fresh;
+        return fresh;
+    }
+
+    // a snapshot taken while the context starts would miss what DataLoader seeds
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        refresh();
+    }
+
+    private static <K, V> Map<K, V> index(List<V> values, Function<V, K> key) {
+        return Collections.unmodifiableMap(values.stream().collect(Collectors.toMap(key, Function.identity(), (a, b) -> a, LinkedHashMap::new)));
+    }
+
+    private static Category copy(Category c) {
+        Category copy = new Category();
+        copy.setId(c.getId());
+        copy.setName(c.getName());
+        copy.setSlug(c.getSlug());
+        copy.setParentId(c.getParentId());
+        return copy;
+    }
+
+    private static Tag copy(Tag t) {
+        Tag copy = new Tag();
+        copy.setId(t.getId());
+        copy.setName(t.getName());
+        copy.setSlug(t.getSlug());
+        return copy;
+    }
+}
@@ -0,0 +1,94 @@
+package com.elbouch.auto.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PreDestroy;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Precomputed, ranked related-product lists served from memory.
+ * Lists are computed from ProductSearchIndex (shared tags, categories, spec values) and refreshed
+ * in the background for the products affected by each index change.
+ */
+@Service
+public class RelatedProductsIndex implements MeterBinder {
+
+    static final int MAX_RELATED = 12;
+
+    private final ProductSearchIndex searchIndex;
+    private final Map<UUID, List<UUID>> related = new ConcurrentHashMap<>();
+    private final Set<UUID> dirty = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean refreshScheduled = new AtomicBoolean();
+    private final ExecutorService refresher = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "related-products-refresh");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public RelatedProductsIndex(ProductSearchIndex searchIndex) {
+        this.searchIndex = searchIndex;
+    }
+
+    public boolean isReady() {
+        return searchIndex.isReady();
+    }
+
+    /** Related product ids, best first; computed on the spot only if the background refresh has not got there yet. */
+    public List<UUID> related(UUID id, int limit) {
+        List<UUID> ids = related.computeIfAbsent(id, k -> searchIndex.neighbours(k, MAX_RELATED));
+        return ids.size() <= limit ? ids : ids.subList(0, limit);
+    }
+
+    @EventListener
+    public void onIndexChanged(ProductSearchIndex.Changed event) {
+        if (event.full()) {
+            related.clear();
+            dirty.addAll(searchIndex.ids());
+        } else {
+            // drop first so readers never see a list from before the write
+            event.affected().forEach(related::remove);
+            dirty.addAll(event.affected());
+        }
+        if (refreshScheduled.compareAndSet(false, true)) {
+            refresher.execute(this::refresh);
+        }
+    }
+
+    private void refresh() {
+        refreshScheduled.set(false);
+        // an id marked again while it is being computed stays dirty and is recomputed on the next pass
+        for (UUID id : List.copyOf(dirty)) {
+            dirty.remove(id);
+            List<UUID> ids = searchIndex.neighbours(id, MAX_RELATED);
+            // deleted or unrelated products: nothing worth keeping, recomputing an empty list is cheap
+            if (ids.isEmpty()) related.remove(id); else related.put(id, ids);
+        }
+    }
+
+    // pending is the refresh backlog: a full index change marks every product
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("catalogue.index.size", related, Map::size).tag("index", "related")
+                .description("Products held by an in-memory catalogue index")
+                .register(registry);
+        Gauge.builder("catalogue.index.pending", dirty, Set::size).tag("index", "related")
+                .description("Products whose related list is waiting to be recomputed")
+                .register(registry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refresher.shutdownNow();
+    }
+}
@@ -1,34 +1,248 @@
 package com.elbouch.auto.service;
 
 import com.elbouch.auto.dto.ProductEventDto;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Iterator;
 import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * SSE fan-out that never blocks the publishing thread: broadcast only enqueues.
+ * Each subscriber has a bounded queue drained on a virtual thread; a newer event for the same product
+ * replaces a pending one, and a subscriber that falls a full queue behind gets a single "resync" event
+ * instead of the backlog. Heartbeats detect dead connections and drop subscribers stuck in a send.
+ * Events carry increasing ids and the most recent ones are kept in a ring buffer, so a reconnecting
+ * client sending Last-Event-ID gets what it missed, or "resync" when the gap exceeds the buffer.
+ */
 @Service
-public class SseService {
-    private final List<SseEmitter> emitters = new CopyOnWriteArrayList<>();
-
-    public SseEmitter subscribe() {
-        SseEmitter emitter = new SseEmitter(0L);
-        emitter.onCompletion(() -> emitters.remove(emitter));
-        emitter.onTimeout(() -> emitters.remove(emitter));
-        emitter.onError((ex) -> emitters.remove(emitter));
-        emitters.add(emitter);
-        return emitter;
+public class SseService implements MeterBinder {
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final ExecutorService senders = Executors.newVirtualThreadPerTaskExecutor();
+    private final ScheduledExecutorService heartbeats = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "sse-heartbeat");
+        t.setDaemon(true);
+        return t;
+    });
+    private final int queueCapacity;
+    private final long stalledAfterMillis;
+    // guarded by this: ids start at the boot time so ids from a previous process always fall before the buffer
+    private long sequence = System.currentTimeMillis();
+    private final ArrayDeque<Outgoing> replay = new ArrayDeque<>();
+    private final int replayCapacity;
+    private final LongAdder droppedStalled = new LongAdder();
+    private final LongAdder droppedFailed = new LongAdder();
+    private final LongAdder overflows = new LongAdder();
+
+    public SseService(@Value("${app.sse.queue-capacity:64}") int queueCapacity,
+                      @Value("${app.sse.heartbeat-seconds:15}") long heartbeatSeconds,
+                      @Value("${app.sse.replay-capacity:1024}") int replayCapacity) {
+        this.queueCapacity = queueCapacity;
+        this.replayCapacity = replayCapacity;
+        this.stalledAfterMillis = TimeUnit.SECONDS.toMillis(heartbeatSeconds * 2);
+        heartbeats.scheduleAtFixedRate(this::heartbeat, heartbeatSeconds, heartbeatSeconds, TimeUnit.SECONDS);
+    }
+
+    private record Outgoing(long id, String name, Object data, String productId) {}
+
+    private static final Outgoing HEARTBEAT = new Outgoing(0, null, null, null);
+
+    private static Outgoing resync(long id) {
+        return new Outgoing(id, "resync", new ProductEventDto("resync", null, null, System.currentTimeMillis()), null);
     }
 
-    public void broadcast(ProductEventDto event) {
-        for (SseEmitter emitter : emitters) {
+    private final class Subscriber {
+        final SseEmitter emitter;
+        final ArrayDeque<Outgoing> queue = new ArrayDeque<>();
+        final AtomicBoolean draining = new AtomicBoolean();
+        // start of the send in progress, 0 when idle
+        volatile long sendingSince;
+
+        Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        void offer(Outgoing out) {
+            synchronized (queue) {
+                if (out.productId() != null) {
+                    // the client only needs the latest state of a product
+                    for (Iterator<Outgoing> it = queue.iterator(); it.hasNext(); ) {
+                        if (out.productId().equals(it.next().productId())) it.remove();
+                    }
+                }
+                if (queue.size() >= queueCapacity) {
+                    overflows.increment();
+                    queue.clear();
+                    queue.add(resync(out.id()));
+                } else {
+                    queue.add(out);
+                }
+            }
+            schedule();
+        }
+
+        void schedule() {
+            if (draining.compareAndSet(false, true)) {
+                senders.execute(this::drain);
+            }
+        }
+
+        void drain() {
             try {
-                emitter.send(SseEmitter.event().name("product").data(event));
+                Outgoing next;
+                while ((next = poll()) != null) {
+                    sendingSince = System.currentTimeMillis();
+                    if (next == HEARTBEAT) {
+                        emitter.send(SseEmitter.event().comment("ping"));
+                    } else {
+                        emitter.send(SseEmitter.event().id(Long.toString(next.id())).name(next.name()).data(next.data()));
+                    }
+                    sendingSince = 0;
+                }
             } catch (Exception e) {
-                try { emitter.completeWithError(e); } catch (Exception ignored) {}
-                emitters.remove(emitter);
+                drop(this, e);
+                return;
+            } finally {
+                draining.set(false);
+            }
+            // an event may have been queued between the last poll and releasing the flag
+            synchronized (queue) {
+                if (queue.isEmpty()) return;
+            }
+            schedule();
+        }
+
+        Outgoing poll() {
+            synchronized (queue) {
+                return queue.poll();
+            }
+        }
+
+        boolean idle() {
+            synchronized (queue) {
+                return queue.isEmpty();
             }
         }
     }
+
+    /** @param lastEventId the Last-Event-ID header of a reconnecting EventSource, or null */
+    public SseEmitter subscribe(String lastEventId) {
+        return subscribe(new SseEmitter(0L), lastEventId);
+    }
+
+    // benchmarks subscribe emitters that are not bound to a response
+    SseEmitter subscribe(SseEmitter emitter, String lastEventId) {
+        Subscriber subscriber = new Subscriber(emitter);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError((ex) -> subscribers.remove(subscriber));
+        Long resumeAfter = parseId(lastEventId);
+        // replay and registration happen under the broadcast lock: nothing is missed or sent twice.
+        // Registered before the first offer, so a send failing at once still finds it to drop.
+        synchronized (this) {
+            subscribers.add(subscriber);
+            long oldest = replay.isEmpty() ? sequence + 1 : replay.peekFirst().id();
+            if (resumeAfter == null || resumeAfter == sequence) {
+                // commits the response at once: otherwise the client only sees the stream open at the first heartbeat
+                subscriber.offer(HEARTBEAT);
+            } else if (resumeAfter >= oldest - 1 && resumeAfter < sequence) {
+                missedSince(resumeAfter).forEach(subscriber::offer);
+            } else {
+                // older than the buffer, or an id this node never issued (another node, a later boot)
+                subscriber.offer(resync(sequence));
+            }
+        }
+        return emitter;
+    }
+
+    public synchronized void broadcast(ProductEventDto event) {
+        publish(new Outgoing(++sequence, "product", event, event.id()));
+    }
+
+    // Tells every client to refetch, when this node may have missed changes
+    public synchronized void broadcastResync() {
+        publish(resync(++sequence));
+    }
+
+    // Enqueueing never blocks, so holding the lock keeps ids in order for every subscriber cheaply
+    private void publish(Outgoing out) {
+        replay.addLast(out);
+        if (replay.size() > replayCapacity) replay.removeFirst();
+        for (Subscriber subscriber : subscribers) {
+            subscriber.offer(out);
+        }
+    }
+
+    // caller holds the lock
+    private List<Outgoing> missedSince(long id) {
+        return replay.stream().filter(o -> o.id() > id).toList();
+    }
+
+    private static Long parseId(String id) {
+        if (id == null || id.isBlank()) return null;
+        try {
+            return Long.parseLong(id.trim());
+        } catch (NumberFormatException e) {
+            return 0L;
+        }
+    }
+
+    public int subscriberCount() {
+        return subscribers.size();
+    }
+
+    private void heartbeat() {
+        long now = System.currentTimeMillis();
+        for (Subscriber subscriber : subscribers) {
+            long since = subscriber.sendingSince;
+            if (since != 0 && now - since > stalledAfterMillis) {
+                drop(subscriber, new TimeoutException("SSE send stalled"));
+            } else if (subscriber.idle()) {
+                // a failed ping surfaces a dead connection; busy queues already prove liveness
+                subscriber.offer(HEARTBEAT);
+            }
+        }
+    }
+
+    private void drop(Subscriber subscriber, Exception cause) {
+        // a connection already closed by the client is not counted as a drop
+        if (subscribers.remove(subscriber)) {
+            (cause instanceof TimeoutException ? droppedStalled : droppedFailed).increment();
+        }
+        try { subscriber.emitter.completeWithError(cause); } catch (Exception ignored) {}
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("sse.subscribers", subscribers, Set::size)
+                .description("Open SSE connections")
+                .register(registry);
+        FunctionCounter.builder("sse.dropped", droppedStalled, LongAdder::sum).tag("reason", "stalled")
+                .description("Subscribers dropped by the server: stuck in a send, or whose send failed")
+                .register(registry);
+        FunctionCounter.builder("sse.dropped", droppedFailed, LongAdder::sum).tag("reason", "failed")
+                .description("Subscribers dropped by the server: stuck in a send, or whose send failed")
+                .register(registry);
+        FunctionCounter.builder("sse.resyncs", overflows, LongAdder::sum)
+                .description("Subscriber backlogs replaced by a resync event because the queue was full")
+                .register(registry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        heartbeats.shutdownNow();
+        senders.shutdownNow();
+    }
 }
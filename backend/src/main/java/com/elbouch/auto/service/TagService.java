@@ -1,22 +1,74 @@
 package com.elbouch.auto.service;
 
 import com.elbouch.auto.entity.Tag;
+import com.elbouch.auto.repository.ProductRepository;
 import com.elbouch.auto.repository.TagRepository;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
 
 @Service
 public class TagService {
+    private static final int EVICT_BATCH = 500;
+
     private final TagRepository tagRepository;
+    private final ProductRepository productRepository;
+    private final CacheManager cacheManager;
+    private final ReferenceData referenceData;
+    private final ProductSearchIndex searchIndex;
+    private final CatalogVersions catalogVersions;
+    private final ClusterSync cluster;
 
-    public TagService(TagRepository tagRepository) {
+    public TagService(TagRepository tagRepository, ProductRepository productRepository, CacheManager cacheManager, ReferenceData referenceData, ProductSearchIndex searchIndex, CatalogVersions catalogVersions, ClusterSync cluster) {
         this.tagRepository = tagRepository;
+        this.productRepository = productRepository;
+        this.cacheManager = cacheManager;
+        this.referenceData = referenceData;
+        this.searchIndex = searchIndex;
+        this.catalogVersions = catalogVersions;
+        this.cluster = cluster;
     }
 
-    public List<Tag> findAll() { return tagRepository.findAll(); }
-    public Optional<Tag> findBySlug(String slug) { return tagRepository.findBySlug(slug); }
-    public Tag save(Tag t) { return tagRepository.save(t); }
-    public void deleteById(java.util.UUID id) { tagRepository.deleteById(id); }
+    public List<Tag> findAll() { return referenceData.snapshot().tags(); }
+    public Optional<Tag> findById(UUID id) { return referenceData.snapshot().tag(id); }
+    public Optional<Tag> findBySlug(String slug) { return referenceData.snapshot().tagBySlug(slug); }
+    // cached product DTOs carry tag slugs, the search index tag names and slugs:
+    // a rename evicts and re-indexes the products carrying the tag, nothing else
+    public Tag save(Tag t) {
+        Set<UUID> carrying = t.getId() == null ? Set.of() : referenceData.snapshot().tag(t.getId())
+                .filter(old -> !Objects.equals(old.getName(), t.getName()) || !Objects.equals(old.getSlug(), t.getSlug()))
+                .map(old -> searchIndex.withTag(old.getSlug()))
+                .orElse(Set.of());
+        Tag saved = tagRepository.save(t);
+        referenceData.refresh();
+        evict(carrying);
+        searchIndex.refresh(carrying);
+        catalogVersions.tagsChanged();
+        cluster.tagChanged(saved.getId());
+        return saved;
+    }
+    public void deleteById(UUID id) {
+        Set<UUID> carrying = referenceData.snapshot().tag(id).map(t -> searchIndex.withTag(t.getSlug())).orElse(Set.of());
+        tagRepository.deleteById(id);
+        referenceData.refresh();
+        evict(carrying);
+        searchIndex.refresh(carrying);
+        catalogVersions.tagsChanged();
+        cluster.tagChanged(id);
+    }
+
+    private void evict(Set<UUID> productIds) {
+        Cache cache = cacheManager.getCache("productBySlug");
+        if (cache == null || productIds.isEmpty()) return;
+        List<UUID> ids = List.copyOf(productIds);
+        for (int i = 0; i < ids.size(); i += EVICT_BATCH) {
+            productRepository.findSlugsByIdIn(ids.subList(i, Math.min(ids.size(), i + EVICT_BATCH))).forEach(cache::evict);
+        }
+    }
 }
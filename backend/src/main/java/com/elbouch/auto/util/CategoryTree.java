@@ -0,0 +1,107 @@
+package com.elbouch.auto.util;
+
+import com.elbouch.auto.entity.Category;
+
+import java.util.*;
+
+/**
+ * Immutable view of the category hierarchy (Category.parentId). Ancestor paths and whole subtrees are
+ * computed once when the tree is built, so breadcrumbs and subtree filters are plain lookups.
+ * A parent that does not exist, or a parent chain that loops, makes the category a root.
+ */
+public class CategoryTree {
+
+    private record Node(Category category, List<Category> path, List<Category> children, Set<UUID> subtreeIds, Set<String> subtreeSlugs) {}
+
+    private final Map<UUID, Node> byId;
+    private final Map<String, Node> bySlug;
+    private final List<Category> roots;
+
+    public CategoryTree(List<Category> categories) {
+        Map<UUID, Category> all = new LinkedHashMap<>();
+        categories.forEach(c -> all.put(c.getId(), c));
+
+        Map<UUID, UUID> parents = new HashMap<>();
+        for (Category c : categories) {
+            UUID parent = c.getParentId();
+            if (parent != null && all.containsKey(parent) && !loops(c.getId(), parent, all)) parents.put(c.getId(), parent);
+        }
+        Map<UUID, List<Category>> children = new HashMap<>();
+        List<Category> rootList = new ArrayList<>();
+        for (Category c : categories) {
+            UUID parent = parents.get(c.getId());
+            if (parent == null) rootList.add(c);
+            else children.computeIfAbsent(parent, k -> new ArrayList<>()).add(c);
+        }
+
+        Map<UUID, Node> nodes = new HashMap<>();
+        for (Category root : rootList) build(root, List.of(), children, nodes);
+        this.byId = Collections.unmodifiableMap(nodes);
+        Map<String, Node> slugs = new HashMap<>();
+        nodes.values().forEach(n -> slugs.put(n.category().getSlug(), n));
+        this.bySlug = Collections.unmodifiableMap(slugs);
+        this.roots = List.copyOf(rootList);
+    }
+
+    // depth-first; returns the node so parents can collect their subtree
+    private static Node build(Category c, List<Category> ancestors, Map<UUID, List<Category>> children, Map<UUID, Node> nodes) {
+        List<Category> path = new ArrayList<>(ancestors);
+        path.add(c);
+        List<Category> direct = children.getOrDefault(c.getId(), List.of());
+        Set<UUID> ids = new LinkedHashSet<>();
+        Set<String> slugs = new LinkedHashSet<>();
+        ids.add(c.getId());
+        slugs.add(c.getSlug());
+        for (Category child : direct) {
+            Node n = build(child, path, children, nodes);
+            ids.addAll(n.subtreeIds());
+            slugs.addAll(n.subtreeSlugs());
+        }
+        Node node = new Node(c, List.copyOf(path), List.copyOf(direct), Collections.unmodifiableSet(ids), Collections.unmodifiableSet(slugs));
+        nodes.put(c.getId(), node);
+        return node;
+    }
+
+    private static boolean loops(UUID id, UUID parent, Map<UUID, Category> all) {
+        Set<UUID> seen = new HashSet<>();
+        for (UUID p = parent; p != null && all.containsKey(p); p = all.get(p).getParentId()) {
+            if (p.equals(id) || !seen.add(p)) return true;
+        }
+        return false;
+    }
+
+    public List<Category> roots() {
+        return roots;
+    }
+
+    public List<Category> children(UUID id) {
+        Node n = byId.get(id);
+        return n == null ? List.of() : n.children();
+    }
+
+    /** Root first, the category itself last; empty for an unknown slug. */
+    public List<Category> breadcrumbs(String slug) {
+        Node n = bySlug.get(slug);
+        return n == null ? List.of() : n.path();
+    }
+
+    /** The category and all its descendants; empty for an unknown slug. */
+    public Set<UUID> subtreeIds(String slug) {
+        Node n = bySlug.get(slug);
+        return n == null ? Set.of() : n.subtreeIds();
+    }
+
+    public Set<String> subtreeSlugs(String slug) {
+        Node n = bySlug.get(slug);
+        return n == null ? Set.of() : n.subtreeSlugs();
+    }
+
+    public Set<UUID> subtreeIds(UUID id) {
+        Node n = byId.get(id);
+        return n == null ? Set.of() : n.subtreeIds();
+    }
+
+    public boolean isAncestor(UUID ancestor, UUID id) {
+        return !ancestor.equals(id) && subtreeIds(ancestor).contains(id);
+    }
+}
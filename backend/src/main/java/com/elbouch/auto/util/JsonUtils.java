@@ -4,6 +4,7 @@ import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
 public class JsonUtils {
@@ -25,4 +26,21 @@ public class JsonUtils {
             return Collections.emptyMap();
         }
     }
+
+    public static String toJson(List<?> list) {
+        try {
+            return list == null ? null : MAPPER.writeValueAsString(list);
+        } catch (Exception e) {
+            throw new RuntimeException("Invalid JSON list", e);
+        }
+    }
+
+    public static <T> List<T> toList(String json, Class<T> type) {
+        try {
+            if (json == null || json.isBlank()) return Collections.emptyList();
+            return MAPPER.readValue(json, MAPPER.getTypeFactory().constructCollectionType(List.class, type));
+        } catch (Exception e) {
+            return Collections.emptyList();
+        }
+    }
 }
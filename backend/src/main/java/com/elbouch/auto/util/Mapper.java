@@ -1,12 +1,15 @@
 package com.elbouch.auto.util;
 
 import com.elbouch.auto.dto.CategoryDto;
+import com.elbouch.auto.dto.CategoryNodeDto;
 import com.elbouch.auto.dto.ImageDto;
+import com.elbouch.auto.dto.ImageVariantDto;
 import com.elbouch.auto.dto.ProductDto;
 import com.elbouch.auto.entity.Category;
 import com.elbouch.auto.entity.Image;
 import com.elbouch.auto.entity.Product;
 import com.elbouch.auto.entity.Tag;
+import com.elbouch.auto.service.ReferenceData;
 
 import java.util.*;
 import java.util.stream.Collectors;
@@ -22,6 +25,27 @@ public class Mapper {
         );
     }
 
+    public static CategoryNodeDto toNode(Category c, CategoryTree tree) {
+        return new CategoryNodeDto(
+                c.getId().toString(),
+                c.getName(),
+                c.getSlug(),
+                tree.children(c.getId()).stream().map(child -> toNode(child, tree)).toList()
+        );
+    }
+
+    public static ImageDto toDto(Image img) {
+        return new ImageDto(
+                img.getUrl(),
+                img.getAlt(),
+                img.isCover(),
+                img.getWidth(),
+                img.getHeight(),
+                img.getPlaceholder(),
+                JsonUtils.toList(img.getVariantsJson(), ImageVariantDto.class)
+        );
+    }
+
     public static ProductDto toDto(Product p) {
         List<String> categoryIds = p.getCategories().stream()
                 .map(cat -> cat.getId().toString())
@@ -31,7 +55,7 @@ public class Mapper {
                 .toList();
         List<ImageDto> images = p.getImages().stream()
                 .sorted((a,b) -> Boolean.compare(b.isCover(), a.isCover()))
-                .map(img -> new ImageDto(img.getUrl(), img.getAlt(), img.isCover()))
+                .map(Mapper::toDto)
                 .toList();
         return new ProductDto(
                 p.getId().toString(),
@@ -45,10 +69,14 @@ public class Mapper {
                 p.getFeatured(),
                 p.getSortOrder(),
                 images,
-                JsonUtils.toMap(p.getSpecsJson())
+                Collections.unmodifiableMap(JsonUtils.toMap(p.getSpecsJson()))
         );
     }
 
+    public static void applyDtoToEntity(ProductDto dto, Product p, ReferenceData.Snapshot refs) {
+        applyDtoToEntity(dto, p, refs.categoriesById(), refs.tagsBySlug());
+    }
+
     public static void applyDtoToEntity(ProductDto dto, Product p,
                                         Map<UUID, Category> categoryMap,
                                         Map<String, Tag> tagBySlug) {
@@ -86,10 +114,19 @@ public class Mapper {
 
         // images handled elsewhere (upload endpoints) or full replace here if provided
         if (dto.images() != null && !dto.images().isEmpty()) {
+            // an image already on the product is kept by url with the sizes, variants and placeholder computed
+            // for it; those are never taken from the client
+            Map<String, Deque<Image>> existing = new HashMap<>();
+            for (Image img : p.getImages()) {
+                // a bag fetched along with other collections can list an image twice
+                Deque<Image> same = existing.computeIfAbsent(img.getUrl(), url -> new ArrayDeque<>());
+                if (!same.contains(img)) same.add(img);
+            }
             p.getImages().clear();
             boolean hasCover = false;
             for (ImageDto i : dto.images()) {
-                Image img = new Image();
+                Deque<Image> same = existing.get(i.url());
+                Image img = same == null || same.isEmpty() ? new Image() : same.poll();
                 img.setProduct(p);
                 img.setUrl(i.url());
                 img.setAlt(i.alt());
@@ -0,0 +1,51 @@
+package com.elbouch.auto.util;
+
+import com.elbouch.auto.entity.Product;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Opaque position for cursor pagination of /api/v1/products: either the (sortOrder, createdAt, id)
+ * key of the last product returned, or an offset into ranked full-text search hits.
+ */
+public record ProductCursor(Integer sortOrder, Instant createdAt, UUID id, Integer offset) {
+
+    public static ProductCursor after(Product p) {
+        return new ProductCursor(p.getSortOrder(), p.getCreatedAt(), p.getId(), null);
+    }
+
+    public static ProductCursor atOffset(int offset) {
+        return new ProductCursor(null, null, null, offset);
+    }
+
+    public boolean isKeyset() {
+        return id != null;
+    }
+
+    public String encode() {
+        String raw = isKeyset()
+                ? "k|" + (sortOrder == null ? "" : sortOrder) + "|" + createdAt + "|" + id
+                : "o|" + offset;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static ProductCursor decode(String cursor) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|", -1);
+            if (parts.length == 4 && parts[0].equals("k")) {
+                return new ProductCursor(
+                        parts[1].isEmpty() ? null : Integer.valueOf(parts[1]),
+                        Instant.parse(parts[2]),
+                        UUID.fromString(parts[3]),
+                        null);
+            }
+            if (parts.length == 2 && parts[0].equals("o")) {
+                return atOffset(Math.max(Integer.parseInt(parts[1]), 0));
+            }
+        } catch (RuntimeException ignored) {}
+        throw new IllegalArgumentException("Invalid cursor");
+    }
+}
@@ -2,11 +2,18 @@ package com.elbouch.auto.util;
 
 import com.elbouch.auto.entity.Category;
 import com.elbouch.auto.entity.Product;
+import com.elbouch.auto.entity.SpecAttribute;
 import com.elbouch.auto.entity.Tag;
 import org.springframework.data.jpa.domain.Specification;
 
 import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.Predicate;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
+import java.util.UUID;
 
 public class ProductSpecifications {
 
@@ -31,21 +38,62 @@ public class ProductSpecifications {
         );
     }
 
-    public static Specification<Product> categorySlug(String slug) {
-        if (slug == null || slug.isBlank()) return null;
+    // a category and its descendants, resolved beforehand from the category tree
+    public static Specification<Product> categoryIn(Collection<UUID> ids) {
+        if (ids == null) return null;
         return (root, query, cb) -> {
+            if (ids.isEmpty()) return cb.disjunction();
+            query.distinct(true);
             Join<Product, Category> join = root.join("categories");
-            return cb.equal(join.get("slug"), slug);
+            return join.get("id").in(ids);
+        };
+    }
+
+    public static Specification<Product> categoryId(UUID id) {
+        if (id == null) return null;
+        return (root, query, cb) -> {
+            Join<Product, Category> join = root.join("categories");
+            return cb.equal(join.get("id"), id);
         };
     }
 
     public static Specification<Product> tagsCsv(String csv) {
-        if (csv == null || csv.isBlank()) return null;
-        List<String> slugs = List.of(csv.split(","));
+        if (csv == null) return null;
+        List<String> slugs = Arrays.stream(csv.split(",")).map(String::trim).filter(t -> !t.isEmpty()).toList();
+        if (slugs.isEmpty()) return null;
         return (root, query, cb) -> {
             query.distinct(true);
             Join<Product, Tag> join = root.join("tags");
             return join.get("slug").in(slugs);
         };
     }
+
+    // one join per filtered key, each hitting the (spec_key, value_text) or (spec_key, value_number) index
+    public static Specification<Product> specs(List<SpecFilter> filters) {
+        if (filters == null || filters.isEmpty()) return null;
+        return (root, query, cb) -> {
+            List<Predicate> predicates = new ArrayList<>();
+            for (SpecFilter f : filters) {
+                Join<Product, SpecAttribute> join = root.join("specAttributes");
+                predicates.add(cb.equal(join.get("specKey"), f.key()));
+                if (f.values() != null) predicates.add(join.get("valueText").in(f.values()));
+                if (f.min() != null) predicates.add(cb.greaterThanOrEqualTo(join.get("valueNumber"), f.min()));
+                if (f.max() != null) predicates.add(cb.lessThanOrEqualTo(join.get("valueNumber"), f.max()));
+            }
+            return cb.and(predicates.toArray(Predicate[]::new));
+        };
+    }
+
+    // Rows strictly after (sortOrder, createdAt, id) for ORDER BY sortOrder ASC NULLS LAST, createdAt DESC, id ASC
+    public static Specification<Product> after(Integer sortOrder, Instant createdAt, UUID id) {
+        return (root, query, cb) -> {
+            Predicate sameSortOrder = sortOrder == null ? cb.isNull(root.get("sortOrder")) : cb.equal(root.get("sortOrder"), sortOrder);
+            Predicate tail = cb.and(sameSortOrder, cb.or(
+                    cb.lessThan(root.get("createdAt"), createdAt),
+                    cb.and(cb.equal(root.get("createdAt"), createdAt), cb.greaterThan(root.get("id"), id))
+            ));
+            if (sortOrder == null) return tail;
+            return cb.or(cb.greaterThan(root.get("sortOrder"), sortOrder), cb.isNull(root.get("sortOrder")), tail);
+        };
+    }
 }
@@ -0,0 +1,53 @@
+package com.elbouch.auto.util;
+
+import com.elbouch.auto.entity.SpecAttribute;
+import org.springframework.util.MultiValueMap;
+
+import java.util.*;
+
+/**
+ * A filter on one spec of /api/v1/products: {@code spec.<key>=a,b} matches any of the values (case-insensitive),
+ * {@code spec.<key>.min=} and {@code spec.<key>.max=} bound numeric values, both inclusive.
+ * Filters on different keys must all match.
+ */
+public record SpecFilter(String key, Set<String> values, Double min, Double max) {
+
+    private static final String PREFIX = "spec.";
+    private static final int MAX_FILTERS = 10;
+
+    public static List<SpecFilter> parse(MultiValueMap<String, String> params) {
+        Map<String, SpecFilter> filters = new LinkedHashMap<>();
+        params.forEach((name, values) -> {
+            if (!name.startsWith(PREFIX) || values.isEmpty()) return;
+            String key = name.substring(PREFIX.length());
+            String value = values.get(0);
+            if (value == null || value.isBlank()) return;
+            if (key.endsWith(".min") || key.endsWith(".max")) {
+                String base = key.substring(0, key.length() - 4);
+                Double bound = SpecAttribute.number(value);
+                if (bound == null) throw new IllegalArgumentException("Not a number: " + name + "=" + value);
+                SpecFilter f = filters.getOrDefault(base, new SpecFilter(base, null, null, null));
+                filters.put(base, key.endsWith(".min") ? new SpecFilter(base, f.values(), bound, f.max())
+                        : new SpecFilter(base, f.values(), f.min(), bound));
+            } else {
+                Set<String> accepted = new HashSet<>();
+                values.forEach(v -> Arrays.stream(v.split(",")).map(SpecAttribute::normalize).filter(s -> !s.isEmpty()).forEach(accepted::add));
+                if (accepted.isEmpty()) return;
+                SpecFilter f = filters.getOrDefault(key, new SpecFilter(key, null, null, null));
+                filters.put(key, new SpecFilter(key, Set.copyOf(accepted), f.min(), f.max()));
+            }
+        });
+        filters.keySet().forEach(key -> {
+            if (key.isEmpty() || key.length() > SpecAttribute.MAX_KEY_LENGTH) throw new IllegalArgumentException("Invalid spec key: " + key);
+        });
+        if (filters.size() > MAX_FILTERS) throw new IllegalArgumentException("At most " + MAX_FILTERS + " spec filters");
+        return List.copyOf(filters.values());
+    }
+
+    /** Whether a normalized value with its number (null when not numeric) passes the filter. */
+    public boolean matches(String text, Double number) {
+        if (values != null && !values.contains(text)) return false;
+        if (min == null && max == null) return true;
+        return number != null && (min == null || number >= min) && (max == null || number <= max);
+    }
+}
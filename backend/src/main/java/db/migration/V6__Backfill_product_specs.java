@@ -0,0 +1,71 @@
+package db.migration;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+
+import java.sql.*;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Fills product_specs from the specs_json of existing products, parsed and normalized as SpecAttribute.of
+ * did when this was written. The rules are copied here rather than called, so later changes to the entity
+ * cannot change what this migration does.
+ */
+public class V6__Backfill_product_specs extends BaseJavaMigration {
+
+    private static final int BATCH_SIZE = 500;
+    private static final int MAX_KEY_LENGTH = 100;
+    private static final int MAX_TEXT_LENGTH = 255;
+    private static final Pattern NUMBER = Pattern.compile("-?\\d+(\\.\\d+)?");
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @Override
+    public void migrate(Context context) throws Exception {
+        Connection connection = context.getConnection();
+        try (Statement select = connection.createStatement();
+             PreparedStatement insert = connection.prepareStatement(
+                     "INSERT INTO product_specs (product_id, spec_key, value_text, value_number) VALUES (?, ?, ?, ?)")) {
+            select.setFetchSize(BATCH_SIZE);
+            int pending = 0;
+            try (ResultSet rs = select.executeQuery("SELECT id, specs_json FROM products WHERE specs_json IS NOT NULL")) {
+                while (rs.next()) {
+                    Object id = rs.getObject(1);
+                    for (Map.Entry<String, Object> spec : parse(rs.getString(2)).entrySet()) {
+                        String key = spec.getKey();
+                        Object value = spec.getValue();
+                        if (key == null || key.length() > MAX_KEY_LENGTH) continue;
+                        if (!(value instanceof String || value instanceof Number || value instanceof Boolean)) continue;
+                        String text = String.valueOf(value).trim().toLowerCase(Locale.ROOT);
+                        if (text.isEmpty() || text.length() > MAX_TEXT_LENGTH) continue;
+                        insert.setObject(1, id);
+                        insert.setString(2, key);
+                        insert.setString(3, text);
+                        if (value instanceof Number n) insert.setDouble(4, n.doubleValue());
+                        else if (NUMBER.matcher(text).matches()) insert.setDouble(4, Double.parseDouble(text));
+                        else insert.setNull(4, Types.DOUBLE);
+                        insert.addBatch();
+                        if (++pending == BATCH_SIZE) {
+                            insert.executeBatch();
+                            pending = 0;
+                        }
+                    }
+                }
+            }
+            if (pending > 0) insert.executeBatch();
+        }
+    }
+
+    // unreadable JSON has no specs
+    private static Map<String, Object> parse(String json) {
+        try {
+            if (json == null || json.isBlank()) return Map.of();
+            return MAPPER.readValue(json, new TypeReference<Map<String, Object>>(){});
+        } catch (Exception e) {
+            return Map.of();
+        }
+    }
+}
@@ -0,0 +1,6 @@
+-- Image derivatives produced in the background after upload
+
+ALTER TABLE images ADD COLUMN width INTEGER;
+ALTER TABLE images ADD COLUMN height INTEGER;
+ALTER TABLE images ADD COLUMN placeholder VARCHAR(2000);
+ALTER TABLE images ADD COLUMN variants_json VARCHAR(4000);
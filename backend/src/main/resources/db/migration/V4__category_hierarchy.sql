@@ -0,0 +1,4 @@
+-- Subtree filters look products up by category (the primary key starts with product_id)
+
+CREATE INDEX IF NOT EXISTS idx_product_categories_category ON product_categories (category_id);
+CREATE INDEX IF NOT EXISTS idx_categories_parent ON categories (parent_id);
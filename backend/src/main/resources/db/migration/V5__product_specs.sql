@@ -0,0 +1,12 @@
+-- Scalar spec values in typed, indexed form; products.specs_json stays the full representation
+
+CREATE TABLE IF NOT EXISTS product_specs (
+    product_id UUID NOT NULL REFERENCES products(id) ON DELETE CASCADE,
+    spec_key VARCHAR(100) NOT NULL,
+    value_text VARCHAR(255) NOT NULL,
+    value_number DOUBLE PRECISION,
+    PRIMARY KEY (product_id, spec_key)
+);
+
+CREATE INDEX IF NOT EXISTS idx_product_specs_text ON product_specs (spec_key, value_text);
+CREATE INDEX IF NOT EXISTS idx_product_specs_number ON product_specs (spec_key, value_number);
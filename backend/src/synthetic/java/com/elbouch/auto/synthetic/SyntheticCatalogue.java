@@ -0,0 +1,205 @@
+package com.elbouch.auto.synthetic;
+
+import com.elbouch.auto.dto.ImageDto;
+import com.elbouch.auto.dto.ImageVariantDto;
+import com.elbouch.auto.dto.ProductDto;
+import com.elbouch.auto.entity.Category;
+import com.elbouch.auto.entity.Product;
+import com.elbouch.auto.entity.Tag;
+import com.elbouch.auto.util.Mapper;
+import com.elbouch.auto.util.Slugify;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Deterministic catalogue for volume tests and benchmarks: a seed always gives the same categories (two levels),
+ * tags and products, and product i is the same whatever the size, so a partly seeded catalogue can be completed.
+ * Popularity is skewed like a real shop: a few categories, tags and spec values cover most products, most
+ * products have one or two images, and optional specs are missing on part of the catalogue.
+ * Products refer to categories by slug, as feeds and imports do.
+ */
+public class SyntheticCatalogue {
+
+    public static final long DEFAULT_SEED = 42;
+
+    private static final String[] ROOTS = {"Éclairage & Signalisation", "Roues & Jantes", "Confort & Sièges", "Conduite & Volants"};
+    private static final String[] KINDS = {"Housse de siège", "Jante alliage", "Volant sport", "Éclairage LED", "Tapis de sol",
+            "Pommeau de vitesse", "Enjoliveur", "Sticker carrosserie", "Organiseur de coffre", "Ampoule xénon"};
+    private static final String[] MATERIALS = {"cuir", "carbone", "chrome", "alcantara", "aluminium", "tissu"};
+    private static final String[] COLOURS = {"noir", "rouge", "bleu", "gris", "blanc", "beige"};
+    private static final String[] SIZES = {"M", "L", "S", "XL"};
+    private static final String[] WORDS = {"qualité", "premium", "montage", "facile", "résistant", "universel", "élégant",
+            "finition", "durable", "compatible", "intérieur", "extérieur", "confort", "sécurité", "garantie", "véhicule"};
+    private static final int CHILDREN_PER_ROOT = 3;
+    private static final int MAX_IMAGES = 5;
+
+    public final List<Category> categories;
+    public final List<Tag> tags;
+    private final long seed;
+    private final List<Category> leaves;
+
+    public SyntheticCatalogue() {
+        this(DEFAULT_SEED);
+    }
+
+    public SyntheticCatalogue(long seed) {
+        this.seed = seed;
+        Random random = new Random(seed);
+        List<Category> cats = new ArrayList<>();
+        List<Category> leafList = new ArrayList<>();
+        for (String root : ROOTS) {
+            Category parent = category(root, null, random);
+            cats.add(parent);
+            for (int i = 1; i <= CHILDREN_PER_ROOT; i++) {
+                Category child = category(root + " " + i, parent.getId(), random);
+                cats.add(child);
+                leafList.add(child);
+            }
+        }
+        this.categories = List.copyOf(cats);
+        this.leaves = List.copyOf(leafList);
+        List<Tag> tagList = new ArrayList<>();
+        for (String word : concat(MATERIALS, COLOURS, WORDS)) {
+            Tag t = new Tag();
+            t.setId(uuid(random));
+            t.setName(word);
+            t.setSlug(Slugify.slugify(word));
+            tagList.add(t);
+        }
+        this.tags = List.copyOf(tagList);
+    }
+
+    /** Products {@code from} (inclusive) to {@code to} (exclusive), generated as they are read. */
+    public Iterator<ProductDto> products(int from, int to) {
+        return new Iterator<>() {
+            int next = from;
+
+            @Override
+            public boolean hasNext() {
+                return next < to;
+            }
+
+            @Override
+            public ProductDto next() {
+                if (next >= to) throw new NoSuchElementException();
+                return product(next++);
+            }
+        };
+    }
+
+    public List<ProductDto> products(int count) {
+        List<ProductDto> products = new ArrayList<>(count);
+        products(0, count).forEachRemaining(products::add);
+        return products;
+    }
+
+    public ProductDto product(int i) {
+        Random random = new Random(seed * 31 + i);
+        String kind = skewed(KINDS, random);
+        String material = skewed(MATERIALS, random);
+        String colour = skewed(COLOURS, random);
+        String name = kind + " " + material + " " + colour + " n°" + (i + 1);
+
+        // mostly filed under a subcategory, sometimes directly under a root
+        List<String> categorySlugs = new ArrayList<>();
+        categorySlugs.add(random.nextInt(100) < 85 ? skewed(leaves, random).getSlug() : skewed(categories, random).getSlug());
+        if (random.nextInt(100) < 30) {
+            String second = skewed(leaves, random).getSlug();
+            if (!categorySlugs.contains(second)) categorySlugs.add(second);
+        }
+        Set<String> tagSlugs = new LinkedHashSet<>();
+        tagSlugs.add(Slugify.slugify(material));
+        tagSlugs.add(Slugify.slugify(colour));
+        for (int t = random.nextInt(4); t > 0; t--) tagSlugs.add(skewed(tags, random).getSlug());
+
+        List<ImageDto> images = new ArrayList<>();
+        for (int k = 0, n = 1 + skewedIndex(MAX_IMAGES, random); k < n; k++) {
+            String base = "/files/synthetic/" + (i + 1) + "-" + k;
+            images.add(new ImageDto(base + ".jpg", name, k == 0, 1600, 1200, "data:image/jpeg;base64,/9j/4AAQSkZJRg==",
+                    List.of(new ImageVariantDto(base + "-320.jpg", 320, 240, "jpeg"), new ImageVariantDto(base + "-640.jpg", 640, 480, "jpeg"),
+                            new ImageVariantDto(base + "-1024.jpg", 1024, 768, "jpeg"))));
+        }
+
+        Map<String, Object> specs = new LinkedHashMap<>();
+        specs.put("matiere", material);
+        specs.put("couleur", colour);
+        if (random.nextInt(100) < 90) specs.put("poids", Math.round(Math.max(0.1, 1.6 + random.nextGaussian() * 0.8) * 100) / 100.0);
+        if (random.nextInt(100) < 60) specs.put("taille", skewed(SIZES, random));
+        if (random.nextInt(100) < 50) specs.put("garantie", 6 * (1 + skewedIndex(4, random)));
+        if (random.nextInt(100) < 30) {
+            specs.put("dimensions", Map.of("l", 10 + random.nextInt(90), "w", 10 + random.nextInt(90), "h", 1 + random.nextInt(30)));
+        }
+
+        return new ProductDto(null, name, null, sentence(random, 8 + random.nextInt(12)), sentence(random, 20 + random.nextInt(180)),
+                categorySlugs, List.copyOf(tagSlugs), random.nextInt(100) < 92, random.nextInt(100) < 5,
+                random.nextBoolean() ? null : random.nextInt(100), images, specs);
+    }
+
+    /** Entities as loaded with all associations, categories resolved from their slugs. */
+    public List<Product> entities(int count) {
+        Map<String, UUID> idsBySlug = new HashMap<>();
+        categories.forEach(c -> idsBySlug.put(c.getSlug(), c.getId()));
+        Map<UUID, Category> categoriesById = new HashMap<>();
+        categories.forEach(c -> categoriesById.put(c.getId(), c));
+        Map<String, Tag> tagsBySlug = new HashMap<>();
+        tags.forEach(t -> tagsBySlug.put(t.getSlug(), t));
+        List<Product> products = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Product p = new Product();
+            Mapper.applyDtoToEntity(withCategoryIds(product(i), idsBySlug), p, categoriesById, tagsBySlug);
+            p.setId(UUID.nameUUIDFromBytes(("product-" + i).getBytes(StandardCharsets.UTF_8)));
+            p.setCreatedAt(Instant.parse("2024-01-01T00:00:00Z").plusSeconds(i));
+            products.add(p);
+        }
+        return products;
+    }
+
+    public static ProductDto withCategoryIds(ProductDto dto, Map<String, UUID> idsBySlug) {
+        List<String> ids = dto.categoryIds().stream().map(slug -> idsBySlug.get(slug).toString()).toList();
+        return new ProductDto(dto.id(), dto.name(), dto.slug(), dto.shortDescription(), dto.description(), ids,
+                dto.tags(), dto.isVisible(), dto.isFeatured(), dto.sortOrder(), dto.images(), dto.specs());
+    }
+
+    // low indexes are picked far more often: about 40% of the picks fall in the first tenth
+    private static int skewedIndex(int size, Random random) {
+        return (int) (size * Math.pow(random.nextDouble(), 2.5));
+    }
+
+    private static <T> T skewed(List<T> values, Random random) {
+        return values.get(skewedIndex(values.size(), random));
+    }
+
+    private static String skewed(String[] values, Random random) {
+        return values[skewedIndex(values.length, random)];
+    }
+
+    private static Category category(String name, UUID parentId, Random random) {
+        Category c = new Category();
+        c.setId(uuid(random));
+        c.setName(name);
+        c.setSlug(Slugify.slugify(name));
+        c.setParentId(parentId);
+        return c;
+    }
+
+    private static UUID uuid(Random random) {
+        return new UUID(random.nextLong(), random.nextLong());
+    }
+
+    private static String sentence(Random random, int words) {
+        StringBuilder sb = new StringBuilder();
+        for (int w = 0; w < words; w++) {
+            if (w > 0) sb.append(' ');
+            sb.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return sb.append('.').toString();
+    }
+
+    private static List<String> concat(String[]... arrays) {
+        Set<String> all = new LinkedHashSet<>();
+        for (String[] a : arrays) all.addAll(Arrays.asList(a));
+        return List.copyOf(all);
+    }
+}
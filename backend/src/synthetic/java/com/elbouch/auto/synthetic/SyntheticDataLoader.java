@@ -0,0 +1,84 @@
+package com.elbouch.auto.synthetic;
+
+import com.elbouch.auto.dto.ImportReportDto;
+import com.elbouch.auto.entity.Category;
+import com.elbouch.auto.entity.Tag;
+import com.elbouch.auto.repository.CategoryRepository;
+import com.elbouch.auto.repository.ProductRepository;
+import com.elbouch.auto.repository.TagRepository;
+import com.elbouch.auto.service.ProductImportService;
+import com.elbouch.auto.service.ReferenceData;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Seeds a synthetic catalogue of {@code app.synthetic.products} products, for volume and load tests:
+ * run with the "synthetic" profile. Products go through the bulk import (batched inserts, one index update).
+ * A catalogue that already has that many products is left alone, a smaller one is completed.
+ * Lives in the synthetic source set (jmh and loadtest profiles), never in the application jar.
+ */
+@Component
+@Profile("synthetic")
+@Order(Ordered.LOWEST_PRECEDENCE)
+public class SyntheticDataLoader implements CommandLineRunner {
+
+    private final CategoryRepository categoryRepository;
+    private final TagRepository tagRepository;
+    private final ProductRepository productRepository;
+    private final ReferenceData referenceData;
+    private final ProductImportService importService;
+
+    @Value("${app.synthetic.products:10000}")
+    private int products;
+
+    @Value("${app.synthetic.seed:42}")
+    private long seed;
+
+    public SyntheticDataLoader(CategoryRepository categoryRepository, TagRepository tagRepository, ProductRepository productRepository,
+                               ReferenceData referenceData, ProductImportService importService) {
+        this.categoryRepository = categoryRepository;
+        this.tagRepository = tagRepository;
+        this.productRepository = productRepository;
+        this.referenceData = referenceData;
+        this.importService = importService;
+    }
+
+    @Override
+    public void run(String... args) throws Exception {
+        SyntheticCatalogue catalogue = new SyntheticCatalogue(seed);
+        // parents come first, so their saved ids are known when their children are saved
+        Map<UUID, UUID> savedIds = new HashMap<>();
+        for (Category c : catalogue.categories) {
+            Category saved = categoryRepository.findBySlug(c.getSlug()).orElseGet(() -> {
+                Category copy = new Category();
+                copy.setName(c.getName());
+                copy.setSlug(c.getSlug());
+                copy.setParentId(c.getParentId() == null ? null : savedIds.get(c.getParentId()));
+                return categoryRepository.save(copy);
+            });
+            savedIds.put(c.getId(), saved.getId());
+        }
+        for (Tag t : catalogue.tags) {
+            if (tagRepository.findBySlug(t.getSlug()).isPresent()) continue;
+            Tag copy = new Tag();
+            copy.setName(t.getName());
+            copy.setSlug(t.getSlug());
+            tagRepository.save(copy);
+        }
+        referenceData.refresh();
+
+        long existing = productRepository.count();
+        if (existing >= products) return;
+        ImportReportDto report = importService.importProducts(catalogue.products((int) existing, products));
+        System.out.println("Synthetic catalogue: " + report.imported() + " products seeded in " + report.durationMs() + " ms"
+                + (report.failed() > 0 ? ", " + report.failed() + " failed, first error: " + report.errors().get(0).message() : ""));
+    }
+}
@@ -0,0 +1,18 @@
+package com.elbouch.auto.synthetic;
+
+import com.elbouch.auto.ElBouchBackendApplication;
+import org.springframework.boot.SpringApplication;
+
+/**
+ * The application with the "synthetic" profile and SyntheticDataLoader on the classpath, for load tests:
+ * mvn -Ploadtest test-compile exec:exec -Dloadtest.main=com.elbouch.auto.synthetic.SyntheticServer
+ * [-Dloadtest.args="--app.synthetic.products=100000"]
+ */
+public class SyntheticServer {
+
+    public static void main(String[] args) {
+        SpringApplication app = new SpringApplication(ElBouchBackendApplication.class);
+        app.setAdditionalProfiles("synthetic");
+        app.run(args);
+    }
+}
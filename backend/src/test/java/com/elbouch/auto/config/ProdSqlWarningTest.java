@@ -0,0 +1,51 @@
+package com.elbouch.auto.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.system.CapturedOutput;
+import org.springframework.boot.test.system.OutputCaptureExtension;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * The prod profile (on the in-memory database, one node) still counts statements per request:
+ * the metric is recorded and a request over the threshold is printed.
+ */
+@SpringBootTest(properties = {
+        "app.cluster.bus=local",
+        "app.sql.warn-threshold=0",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=none"
+})
+@AutoConfigureMockMvc
+@ActiveProfiles({"prod", "test"})
+@ExtendWith(OutputCaptureExtension.class)
+class ProdSqlWarningTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private MeterRegistry registry;
+
+    @Test
+    void requestOverThresholdIsPrinted(CapturedOutput output) throws Exception {
+        mockMvc.perform(get("/api/v1/products")).andExpect(status().isOk());
+
+        assertThat(output.getErr()).contains("SQL GET /api/v1/products: ", "over the threshold of 0");
+        DistributionSummary statements = registry.find("http.server.requests.sql.statements")
+                .tag("uri", "/api/v1/products").summary();
+        assertThat(statements).isNotNull();
+        assertThat(statements.totalAmount()).isGreaterThan(0);
+    }
+}
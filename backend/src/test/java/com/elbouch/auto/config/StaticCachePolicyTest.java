@@ -0,0 +1,82 @@
+package com.elbouch.auto.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.not;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Uploads are cached for a year once they exist; a 404 must not be, or a client would keep it after the upload.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class StaticCachePolicyTest {
+
+    private static final String IMMUTABLE = "max-age=31536000, public, immutable";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Value("${app.uploads-dir}")
+    private String uploadsDir;
+
+    private Path file;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        file = Path.of(uploadsDir).resolve("cache-policy-probe.svg");
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, "<svg xmlns=\"http://www.w3.org/2000/svg\"/>");
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    void uploadIsImmutable() throws Exception {
+        mockMvc.perform(get("/uploads/cache-policy-probe.svg"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Cache-Control", IMMUTABLE));
+    }
+
+    @Test
+    void notModifiedKeepsPolicy() throws Exception {
+        String lastModified = mockMvc.perform(get("/uploads/cache-policy-probe.svg"))
+                .andReturn().getResponse().getHeader("Last-Modified");
+        mockMvc.perform(get("/uploads/cache-policy-probe.svg").header("If-Modified-Since", lastModified))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("Cache-Control", IMMUTABLE));
+    }
+
+    @Test
+    void missingUploadIsNotCached() throws Exception {
+        mockMvc.perform(get("/uploads/never-uploaded.svg"))
+                .andExpect(status().isNotFound())
+                // only Spring Security's default no-store
+                .andExpect(header().string("Cache-Control", not(containsString("max-age=31536000"))));
+    }
+
+    @Test
+    void unversionedAssetIsRevalidated() throws Exception {
+        mockMvc.perform(get("/css/admin.css"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Cache-Control", "no-cache, public"));
+    }
+}
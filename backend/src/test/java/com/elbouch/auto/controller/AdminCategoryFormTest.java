@@ -0,0 +1,80 @@
+package com.elbouch.auto.controller;
+
+import com.elbouch.auto.entity.Category;
+import com.elbouch.auto.service.CategoryService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * A parent the service refuses sends the admin back to the form with the reason, not to an error page.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@WithMockUser(roles = "ADMIN")
+class AdminCategoryFormTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private CategoryService categoryService;
+
+    @Test
+    void unknownParentShowsForm() throws Exception {
+        mockMvc.perform(post("/admin/categories").with(csrf())
+                        .param("name", "Orpheline")
+                        .param("slug", "orpheline")
+                        .param("parentId", UUID.randomUUID().toString()))
+                .andExpect(status().isOk())
+                .andExpect(view().name("admin/categories/form"))
+                .andExpect(model().attributeHasFieldErrors("category", "parentId"));
+    }
+
+    @Test
+    void cycleShowsForm() throws Exception {
+        String suffix = UUID.randomUUID().toString().substring(0, 8);
+        Category parent = categoryService.save(category("Parent " + suffix, null));
+        Category child = categoryService.save(category("Enfant " + suffix, parent.getId()));
+
+        mockMvc.perform(post("/admin/categories/{id}", parent.getId()).with(csrf())
+                        .param("name", parent.getName())
+                        .param("slug", parent.getSlug())
+                        .param("parentId", child.getId().toString()))
+                .andExpect(status().isOk())
+                .andExpect(view().name("admin/categories/form"))
+                .andExpect(model().attributeHasFieldErrors("category", "parentId"))
+                .andExpect(content().string(containsString("error-message")));
+        assertThat(categoryService.findById(parent.getId()).orElseThrow().getParentId()).isNull();
+    }
+
+    @Test
+    void validParentRedirects() throws Exception {
+        String suffix = UUID.randomUUID().toString().substring(0, 8);
+        mockMvc.perform(post("/admin/categories").with(csrf())
+                        .param("name", "Valide " + suffix)
+                        .param("slug", "valide-" + suffix))
+                .andExpect(redirectedUrl("/admin/categories"));
+    }
+
+    private static Category category(String name, UUID parentId) {
+        Category c = new Category();
+        c.setName(name);
+        c.setSlug(name.toLowerCase().replace(' ', '-'));
+        c.setParentId(parentId);
+        return c;
+    }
+}
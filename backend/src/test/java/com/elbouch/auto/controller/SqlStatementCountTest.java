@@ -0,0 +1,88 @@
+package com.elbouch.auto.controller;
+
+import com.elbouch.auto.entity.Product;
+import com.elbouch.auto.repository.ProductRepository;
+import com.elbouch.auto.service.RelatedProductsIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static com.elbouch.auto.util.QueryCounts.assertStatements;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Pins the statements each hot endpoint runs on the seeded catalogue: a page of products is loaded with its
+ * associations in one query, so a higher count means lazy loading (an N+1) crept back in.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class SqlStatementCountTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private RelatedProductsIndex relatedIndex;
+
+    private Product product;
+
+    @BeforeEach
+    void setUp() {
+        cacheManager.getCache("productBySlug").clear();
+        product = productRepository.findAll().get(0);
+    }
+
+    @Test
+    void listing() throws Exception {
+        // ids of the page, count, then the page with its associations
+        assertStatements(3, () -> mockMvc.perform(get("/api/v1/products")).andExpect(status().isOk()));
+    }
+
+    @Test
+    void listingWithFacets() throws Exception {
+        // facets are counted from the search index
+        assertStatements(3, () -> mockMvc.perform(get("/api/v1/products").param("facets", "1")).andExpect(status().isOk()));
+    }
+
+    @Test
+    void detail() throws Exception {
+        assertStatements(1, () -> mockMvc.perform(get("/api/v1/products/{slug}", product.getSlug())).andExpect(status().isOk()));
+        // served from productBySlug
+        assertStatements(0, () -> mockMvc.perform(get("/api/v1/products/{slug}", product.getSlug())).andExpect(status().isOk()));
+    }
+
+    @Test
+    void related() throws Exception {
+        // the index is built after startup; before that related products are searched in SQL
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (!relatedIndex.isReady() && System.currentTimeMillis() < deadline) Thread.sleep(50);
+        // the product, then the related products by id with their associations
+        assertStatements(2, () -> mockMvc.perform(get("/api/v1/products/{slug}/related", product.getSlug())).andExpect(status().isOk()));
+    }
+
+    @Test
+    void categories() throws Exception {
+        assertStatements(0, () -> mockMvc.perform(get("/api/v1/categories/tree")).andExpect(status().isOk()));
+    }
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    void adminEdit() throws Exception {
+        // the product with its associations; categories and tags come from ReferenceData
+        assertStatements(1, () -> mockMvc.perform(get("/admin/products/{id}/edit", product.getId())).andExpect(status().isOk()));
+    }
+}
@@ -0,0 +1,52 @@
+package com.elbouch.auto.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Placing an upload whose content is already stored keeps one intact copy.
+ */
+class FileStorageServiceTest {
+
+    @TempDir
+    Path dir;
+
+    private static MockMultipartFile upload(String content) {
+        return new MockMultipartFile("file", "photo.png", "image/png", content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void sameContentIsStoredOnce() throws Exception {
+        FileStorageService storage = new FileStorageService(dir.toString());
+
+        String first = storage.save(upload("pixels"));
+        String second = storage.save(upload("pixels"));
+
+        assertThat(second).isEqualTo(first);
+        try (var files = Files.list(dir)) {
+            assertThat(files).extracting(f -> f.getFileName().toString()).containsExactly(first);
+        }
+    }
+
+    @Test
+    void corruptedCopyOfTheSameSizeIsReplaced() throws Exception {
+        FileStorageService storage = new FileStorageService(dir.toString());
+        String filename = storage.save(upload("pixels"));
+        Path stored = dir.resolve(filename);
+        Files.writeString(stored, "pixelz");
+
+        assertThat(storage.save(upload("pixels"))).isEqualTo(filename);
+
+        assertThat(Files.readString(stored)).isEqualTo("pixels");
+        try (var files = Files.list(dir)) {
+            assertThat(files).hasSize(1);
+        }
+    }
+}
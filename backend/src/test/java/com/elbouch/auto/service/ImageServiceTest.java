@@ -0,0 +1,81 @@
+package com.elbouch.auto.service;
+
+import com.elbouch.auto.entity.Image;
+import com.elbouch.auto.entity.Product;
+import com.elbouch.auto.repository.ImageRepository;
+import com.elbouch.auto.repository.ProductRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+
+/**
+ * An upload whose file cannot be placed after the row committed leaves neither the row nor the temporary file.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class ImageServiceTest {
+
+    @Autowired
+    private ImageService imageService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ImageRepository imageRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @SpyBean
+    private FileStorageService fileStorageService;
+
+    @Value("${app.uploads-dir}")
+    private String uploadsDir;
+
+    @Test
+    void failedPlacementRemovesRow() throws Exception {
+        doThrow(new IOException("disk full")).when(fileStorageService).place(any());
+        UUID productId = productRepository.findAll().get(0).getId();
+        long images = imageRepository.count();
+        MockMultipartFile file = new MockMultipartFile("file", "probe.svg", "image/svg+xml",
+                ("<svg xmlns=\"http://www.w3.org/2000/svg\" id=\"" + UUID.randomUUID() + "\"/>").getBytes());
+
+        Image stored = transactionTemplate.execute(status -> {
+            Product p = productRepository.findByIdWithAll(productId).orElseThrow();
+            try {
+                return imageService.store(p, file, true);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        assertThat(imageRepository.findById(stored.getId())).isEmpty();
+        assertThat(imageRepository.count()).isEqualTo(images);
+        try (Stream<Path> files = Files.list(Path.of(uploadsDir))) {
+            assertThat(files.map(f -> f.getFileName().toString())).noneMatch(name -> name.startsWith(".upload-"));
+        }
+        // the cover it took over is handed back to a remaining image
+        Product p = transactionTemplate.execute(status -> {
+            Product loaded = productRepository.findByIdWithAll(productId).orElseThrow();
+            loaded.getImages().size();
+            return loaded;
+        });
+        assertThat(p.getImages().isEmpty() || p.getImages().stream().anyMatch(Image::isCover)).isTrue();
+    }
+}
@@ -0,0 +1,166 @@
+package com.elbouch.auto.service;
+
+import com.elbouch.auto.dto.ProductDto;
+import com.elbouch.auto.entity.Category;
+import com.elbouch.auto.entity.Product;
+import com.elbouch.auto.entity.Tag;
+import com.elbouch.auto.repository.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static com.elbouch.auto.util.QueryCounts.assertStatements;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * A write evicts the slugs of the product it touches and nothing else: another product warmed in
+ * productBySlug is still served from the cache afterwards.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class ProductCacheEvictionTest {
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private TagService tagService;
+
+    @Autowired
+    private CategoryService categoryService;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    private Cache cache;
+    private ProductDto a;
+    private ProductDto b;
+
+    @BeforeEach
+    void setUp() {
+        cache = cacheManager.getCache("productBySlug");
+        cache.clear();
+        List<Product> products = productRepository.findAll();
+        a = productService.findBySlug(products.get(0).getSlug()).orElseThrow();
+        b = productService.findBySlug(products.get(1).getSlug()).orElseThrow();
+    }
+
+    @Test
+    void updateKeepsOtherProducts() throws Exception {
+        productService.update(id(a), copy(a, a.name() + " (mis à jour)", a.slug(), a.categoryIds(), a.tags()));
+
+        assertThat(cache.get(a.slug())).isNull();
+        assertThat(productService.findBySlug(a.slug()).orElseThrow().name()).endsWith("(mis à jour)");
+        assertCached(b);
+    }
+
+    @Test
+    void slugChangeEvictsOldAndNewSlugs() throws Exception {
+        String newSlug = a.slug() + "-renomme";
+        // a miss is cached too
+        assertThat(productService.findBySlug(newSlug)).isEmpty();
+
+        productService.update(id(a), copy(a, a.name(), newSlug, a.categoryIds(), a.tags()));
+
+        assertThat(productService.findBySlug(a.slug())).isEmpty();
+        assertThat(productService.findBySlug(newSlug)).isPresent();
+        assertCached(b);
+    }
+
+    @Test
+    void tagChangeKeepsOtherProducts() throws Exception {
+        List<String> tags = new ArrayList<>(a.tags());
+        Tag added = tagService.findAll().stream().filter(t -> !tags.contains(t.getSlug())).findFirst().orElseThrow();
+        tags.add(added.getSlug());
+
+        productService.update(id(a), copy(a, a.name(), a.slug(), a.categoryIds(), tags));
+
+        assertThat(productService.findBySlug(a.slug()).orElseThrow().tags()).contains(added.getSlug());
+        assertCached(b);
+    }
+
+    @Test
+    void categoryChangeKeepsOtherProducts() throws Exception {
+        Category other = categoryService.findAll().stream()
+                .filter(c -> !a.categoryIds().contains(c.getId().toString())).findFirst().orElseThrow();
+
+        productService.update(id(a), copy(a, a.name(), a.slug(), List.of(other.getId().toString()), a.tags()));
+
+        assertThat(productService.findBySlug(a.slug()).orElseThrow().categoryIds()).containsExactly(other.getId().toString());
+        assertCached(b);
+    }
+
+    @Test
+    void createAndDeleteKeepOtherProducts() throws Exception {
+        Product created = productService.create(new ProductDto(null, "Produit éphémère", null, null, null,
+                a.categoryIds(), a.tags(), true, false, 0, List.of(), Map.of()));
+        assertCached(b);
+
+        productService.findBySlug(created.getSlug()).orElseThrow();
+        productService.delete(created.getId());
+
+        assertThat(productService.findBySlug(created.getSlug())).isEmpty();
+        assertCached(b);
+    }
+
+    @Test
+    void tagCreateKeepsAllProducts() throws Exception {
+        tagService.save(tag("Nouveau " + UUID.randomUUID().toString().substring(0, 8)));
+
+        assertCached(a);
+        assertCached(b);
+    }
+
+    @Test
+    void tagRenameEvictsOnlyCarryingProducts() throws Exception {
+        String suffix = UUID.randomUUID().toString().substring(0, 8);
+        Tag tag = tagService.save(tag("Renommé " + suffix));
+        List<String> tags = new ArrayList<>(a.tags());
+        tags.add(tag.getSlug());
+        productService.update(id(a), copy(a, a.name(), a.slug(), a.categoryIds(), tags));
+        ProductDto carrying = productService.findBySlug(a.slug()).orElseThrow();
+        assertCached(b);
+
+        Tag renamed = tag("Renommé bis " + suffix);
+        renamed.setId(tag.getId());
+        tagService.save(renamed);
+
+        assertThat(cache.get(carrying.slug())).isNull();
+        assertThat(productService.findBySlug(a.slug()).orElseThrow().tags()).contains(renamed.getSlug());
+        assertCached(b);
+    }
+
+    private static Tag tag(String name) {
+        Tag t = new Tag();
+        t.setName(name);
+        t.setSlug(name.toLowerCase().replace(' ', '-').replace("é", "e"));
+        return t;
+    }
+
+    // a hit runs no SQL
+    private void assertCached(ProductDto product) throws Exception {
+        assertThat(cache.get(product.slug())).isNotNull();
+        assertStatements(0, () -> assertThat(productService.findBySlug(product.slug())).contains(product));
+    }
+
+    private static UUID id(ProductDto dto) {
+        return UUID.fromString(dto.id());
+    }
+
+    private static ProductDto copy(ProductDto dto, String name, String slug, List<String> categoryIds, List<String> tags) {
+        return new ProductDto(dto.id(), name, slug, dto.shortDescription(), dto.description(), categoryIds, tags,
+                dto.isVisible(), dto.isFeatured(), dto.sortOrder(), dto.images(), dto.specs());
+    }
+}
@@ -0,0 +1,105 @@
+package com.elbouch.auto.service;
+
+import com.elbouch.auto.dto.ProductEventDto;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Events of a transaction are published once, after commit, one per product.
+ */
+class ProductEventOutboxTest {
+
+    private static final long WINDOW_MILLIS = 20;
+
+    private SseService sse;
+    private ProductEventOutbox outbox;
+
+    @BeforeEach
+    void setUp() {
+        sse = mock(SseService.class);
+        outbox = new ProductEventOutbox(sse, mock(ClusterSync.class), WINDOW_MILLIS);
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) TransactionSynchronizationManager.clearSynchronization();
+        outbox.shutdown();
+    }
+
+    @Test
+    void rollbackPublishesNothing() throws Exception {
+        outbox.record("product.updated", "p1", "produit-1");
+
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        assertThat(broadcasts(0)).isEmpty();
+    }
+
+    @Test
+    void commitPublishesOnce() throws Exception {
+        outbox.record("product.updated", "p1", "produit-1");
+        Thread.sleep(3 * WINDOW_MILLIS);
+        verifyNoInteractions(sse);
+
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+
+        assertThat(broadcasts(1)).extracting(ProductEventDto::type, ProductEventDto::id)
+                .containsExactly(tuple("product.updated", "p1"));
+    }
+
+    @Test
+    void changesToOneProductAreCoalesced() throws Exception {
+        outbox.record("product.created", "p1", "produit-1");
+        outbox.record("product.updated", "p1", "produit-1-renomme");
+        outbox.record("image.updated", "p1", "produit-1-renomme");
+        outbox.record("product.updated", "p2", "produit-2");
+
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+
+        // a client that never saw the creation still gets it, under the latest slug
+        assertThat(broadcasts(2)).extracting(ProductEventDto::type, ProductEventDto::id, ProductEventDto::slug)
+                .containsExactly(tuple("product.created", "p1", "produit-1-renomme"), tuple("product.updated", "p2", "produit-2"));
+    }
+
+    @Test
+    void failedBroadcastDoesNotStopTheBatch() throws Exception {
+        doThrow(new IllegalStateException("gone")).doNothing().when(sse).broadcast(any(ProductEventDto.class));
+        outbox.record("product.updated", "p1", "produit-1");
+        outbox.record("product.updated", "p2", "produit-2");
+
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+
+        assertThat(broadcasts(2)).extracting(ProductEventDto::id).containsExactly("p1", "p2");
+    }
+
+    private static void complete(int status) {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        synchronizations.forEach(s -> s.afterCompletion(status));
+    }
+
+    // broadcast is synchronized: verify(timeout(...)) would poll while holding the mock's monitor and block the flusher
+    private List<ProductEventDto> broadcasts(int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 2000;
+        while (mockingDetails(sse).getInvocations().size() < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        // nothing more arrives in the next windows
+        Thread.sleep(5 * WINDOW_MILLIS);
+        ArgumentCaptor<ProductEventDto> events = ArgumentCaptor.forClass(ProductEventDto.class);
+        verify(sse, times(expected)).broadcast(events.capture());
+        return events.getAllValues();
+    }
+}
@@ -0,0 +1,93 @@
+package com.elbouch.auto.service;
+
+import com.elbouch.auto.dto.ImageDto;
+import com.elbouch.auto.dto.ImportReportDto;
+import com.elbouch.auto.dto.ProductDto;
+import com.elbouch.auto.entity.Product;
+import com.elbouch.auto.repository.ProductRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class ProductImportServiceTest {
+
+    @Autowired
+    private ProductImportService importService;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ReferenceData referenceData;
+
+    @Test
+    void csvRowsWithUnknownReferencesAreReported() throws Exception {
+        ReferenceData.Snapshot refs = referenceData.snapshot();
+        String category = refs.categories().get(0).getSlug();
+        String tag = refs.tags().get(0).getSlug();
+        String suffix = UUID.randomUUID().toString().substring(0, 8);
+        String csv = "name, slug ,categories,tags, spec.puissance ,specs\n"
+                + "Import " + suffix + ",import-" + suffix + "," + category + "," + tag + ",110,\"{\"\"couleur\"\":\"\"rouge\"\"}\"\n"
+                + "Rejet " + suffix + ",," + category + "|inconnue-" + suffix + "," + tag + "|absent-" + suffix + ",,\n";
+        Instant before = Instant.now();
+
+        ImportReportDto report = importService.importCsv(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)));
+
+        assertThat(report.imported()).isEqualTo(1);
+        assertThat(report.failed()).isEqualTo(1);
+        assertThat(report.errors()).singleElement().satisfies(error -> {
+            assertThat(error.line()).isEqualTo(3);
+            assertThat(error.message()).contains("inconnue-" + suffix, "absent-" + suffix);
+        });
+        ProductDto imported = productService.findBySlug("import-" + suffix).orElseThrow();
+        assertThat(imported.tags()).containsExactly(tag);
+        assertThat(imported.specs()).containsEntry("puissance", 110.0).containsEntry("couleur", "rouge");
+        // written through JDBC in UTC, read back through Hibernate
+        Product product = productRepository.findBySlug("import-" + suffix).orElseThrow();
+        assertThat(Duration.between(before, product.getCreatedAt()).abs()).isLessThan(Duration.ofMinutes(1));
+    }
+
+    @Test
+    void badRowDoesNotFailItsChunk() throws Exception {
+        String suffix = UUID.randomUUID().toString().substring(0, 8);
+        List<ProductDto> rows = List.of(
+                product("Avant " + suffix, null),
+                // refused by the length check, before the chunk is written
+                product("N".repeat(256), null),
+                // refused by the database only (images.url is NOT NULL): the chunk is retried row by row
+                product("Sans url " + suffix, new ImageDto(null, null, true, null, null, null, null)),
+                product("Après " + suffix, null));
+
+        ImportReportDto report = importService.importProducts(rows.iterator());
+
+        assertThat(report.imported()).isEqualTo(2);
+        assertThat(report.failed()).isEqualTo(2);
+        assertThat(report.errors()).extracting(ImportReportDto.RowError::line).containsExactly(2L, 3L);
+        assertThat(report.errors().get(0).message()).startsWith("too long: name (max 255)");
+        assertThat(report.errors().get(1).message()).startsWith("Not imported: ");
+        assertThat(productService.findBySlug("avant-" + suffix)).isPresent();
+        assertThat(productService.findBySlug("apres-" + suffix)).isPresent();
+        assertThat(productService.findBySlug("sans-url-" + suffix)).isEmpty();
+    }
+
+    private static ProductDto product(String name, ImageDto image) {
+        return new ProductDto(null, name, null, null, null, List.of(), List.of(), true, false, 0,
+                image == null ? List.of() : List.of(image), Map.of());
+    }
+}
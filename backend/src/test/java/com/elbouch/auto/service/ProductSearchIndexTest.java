@@ -0,0 +1,94 @@
+package com.elbouch.auto.service;
+
+import com.elbouch.auto.dto.ProductDto;
+import com.elbouch.auto.entity.Product;
+import com.elbouch.auto.repository.ProductRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tag filters read "a, b" like the SQL listing, and overlapping rebuilds keep every write.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class ProductSearchIndexTest {
+
+    @Autowired
+    private ProductSearchIndex index;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void tagListIsTrimmed() {
+        Product tagged = transactionTemplate.execute(s -> {
+            Product p = productRepository.findAll().stream().filter(x -> !x.getTags().isEmpty()).findFirst().orElseThrow();
+            p.getTags().size();
+            return p;
+        });
+        String tag = tagged.getTags().iterator().next().getSlug();
+        String spaced = "inconnu, " + tag + " ";
+        String q = ProductSearchIndex.tokenize(tagged.getName()).get(0);
+
+        assertThat(index.search(q, null, spaced, null, null, null)).contains(tagged.getId());
+        assertThat(index.facets(null, null, spaced, null, null, null))
+                .isEqualTo(index.facets(null, null, "inconnu," + tag, null, null, null));
+        // the SQL listing, used without a query
+        assertThat(productService.search(null, null, spaced, null, null, null, 0, 1000).getContent())
+                .extracting(Product::getId).contains(tagged.getId());
+    }
+
+    @Test
+    void overlappingRebuildsKeepWrites() throws Exception {
+        List<UUID> created = new ArrayList<>();
+        ExecutorService threads = Executors.newFixedThreadPool(3);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> running = new ArrayList<>();
+            for (int i = 0; i < 2; i++) {
+                running.add(threads.submit(() -> {
+                    start.await();
+                    for (int n = 0; n < 10; n++) index.rebuild();
+                    return null;
+                }));
+            }
+            running.add(threads.submit(() -> {
+                start.await();
+                for (int n = 0; n < 10; n++) {
+                    created.add(productService.create(new ProductDto(null, "Produit concurrent " + n, null, null, null,
+                            List.of(), List.of(), true, false, 0, List.of(), Map.of())).getId());
+                }
+                return null;
+            }));
+            start.countDown();
+            for (Future<?> f : running) f.get();
+
+            assertThat(index.ids()).containsAll(created)
+                    .isEqualTo(Set.copyOf(productRepository.findAll().stream().map(Product::getId).toList()));
+        } finally {
+            threads.shutdown();
+            created.forEach(productService::delete);
+        }
+    }
+}
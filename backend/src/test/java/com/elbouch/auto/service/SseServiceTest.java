@@ -0,0 +1,268 @@
+package com.elbouch.auto.service;
+
+import com.elbouch.auto.dto.ProductEventDto;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Replay after a reconnect, resync when the gap is not in the buffer, and slow subscribers.
+ */
+class SseServiceTest {
+
+    private static final String PING = "ping";
+
+    private SseService sse;
+
+    @AfterEach
+    void tearDown() {
+        if (sse != null) sse.shutdown();
+    }
+
+    /** What a client received: the event id and name, or a heartbeat comment. */
+    record Sent(Long id, String name) {}
+
+    static class RecordingEmitter extends SseEmitter {
+        final BlockingQueue<Sent> sent = new LinkedBlockingQueue<>();
+        volatile Throwable failure;
+
+        RecordingEmitter() {
+            super(0L);
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            StringBuilder text = new StringBuilder();
+            for (var item : builder.build()) {
+                if (item.getData() instanceof String s) text.append(s);
+            }
+            Long id = null;
+            String name = PING;
+            for (String line : text.toString().split("\n")) {
+                if (line.startsWith("id:")) id = Long.parseLong(line.substring(3));
+                if (line.startsWith("event:")) name = line.substring(6);
+            }
+            sent.add(new Sent(id, name));
+        }
+
+        @Override
+        public void completeWithError(Throwable ex) {
+            failure = ex;
+        }
+
+        Sent next() throws InterruptedException {
+            Sent next = sent.poll(5, TimeUnit.SECONDS);
+            assertThat(next).as("an event within 5s").isNotNull();
+            return next;
+        }
+
+        List<Sent> events(int count) throws InterruptedException {
+            List<Sent> events = new ArrayList<>();
+            while (events.size() < count) {
+                Sent next = next();
+                if (!PING.equals(next.name())) events.add(next);
+            }
+            return events;
+        }
+
+        void assertNothingMore() throws InterruptedException {
+            Sent extra = sent.poll(200, TimeUnit.MILLISECONDS);
+            assertThat(extra).isNull();
+        }
+    }
+
+    // blocks every send until released, like a client that stopped reading
+    static class StuckEmitter extends RecordingEmitter {
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch sending = new CountDownLatch(1);
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            sending.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            super.send(builder);
+        }
+    }
+
+    private static ProductEventDto event(int product) {
+        return new ProductEventDto("product.updated", "id-" + product, "produit-" + product, 0L);
+    }
+
+    // broadcasts one event per product and returns their ids, as seen by a connected client
+    private List<Long> broadcast(int count) throws InterruptedException {
+        RecordingEmitter witness = new RecordingEmitter();
+        sse.subscribe(witness, null);
+        for (int i = 0; i < count; i++) sse.broadcast(event(i));
+        return witness.events(count).stream().map(Sent::id).toList();
+    }
+
+    @Test
+    void idsStartAtBootTimeAndIncrease() throws Exception {
+        long before = System.currentTimeMillis();
+        sse = new SseService(64, 3600, 16);
+
+        List<Long> ids = broadcast(3);
+
+        assertThat(ids.get(0)).isGreaterThan(before);
+        assertThat(ids).containsExactly(ids.get(0), ids.get(0) + 1, ids.get(0) + 2);
+    }
+
+    @Test
+    void newSubscriberGetsAHeartbeatOnly() throws Exception {
+        sse = new SseService(64, 3600, 16);
+        broadcast(3);
+
+        RecordingEmitter client = new RecordingEmitter();
+        sse.subscribe(client, null);
+
+        assertThat(client.next()).isEqualTo(new Sent(null, PING));
+        client.assertNothingMore();
+    }
+
+    @Test
+    void reconnectReplaysWhatWasMissed() throws Exception {
+        sse = new SseService(64, 3600, 16);
+        List<Long> ids = broadcast(5);
+
+        RecordingEmitter client = new RecordingEmitter();
+        sse.subscribe(client, Long.toString(ids.get(1)));
+
+        assertThat(client.events(3)).extracting(Sent::id).containsExactly(ids.get(2), ids.get(3), ids.get(4));
+        assertThat(client.sent).isEmpty();
+
+        // then receives live events after the replayed ones
+        sse.broadcast(event(9));
+        assertThat(client.events(1)).extracting(Sent::id).containsExactly(ids.get(4) + 1);
+    }
+
+    @Test
+    void reconnectWithTheLatestIdGetsAHeartbeatOnly() throws Exception {
+        sse = new SseService(64, 3600, 16);
+        List<Long> ids = broadcast(3);
+
+        RecordingEmitter client = new RecordingEmitter();
+        sse.subscribe(client, Long.toString(ids.get(2)));
+
+        assertThat(client.next()).isEqualTo(new Sent(null, PING));
+        client.assertNothingMore();
+    }
+
+    @Test
+    void replayFollowsTheRingAfterItWraps() throws Exception {
+        sse = new SseService(64, 3600, 4);
+        List<Long> ids = broadcast(10);
+
+        // the buffer holds the last 4: resuming just before the oldest of them still replays everything
+        RecordingEmitter edge = new RecordingEmitter();
+        sse.subscribe(edge, Long.toString(ids.get(5)));
+        assertThat(edge.events(4)).extracting(Sent::id).containsExactlyElementsOf(ids.subList(6, 10));
+        edge.assertNothingMore();
+
+        // one further back, an event is gone: the client must refetch
+        RecordingEmitter tooOld = new RecordingEmitter();
+        sse.subscribe(tooOld, Long.toString(ids.get(4)));
+        Sent resync = tooOld.next();
+        assertThat(resync.name()).isEqualTo("resync");
+        assertThat(resync.id()).isEqualTo(ids.get(9));
+        tooOld.assertNothingMore();
+    }
+
+    @Test
+    void idsThisNodeNeverIssuedGetAResync() throws Exception {
+        sse = new SseService(64, 3600, 16);
+        List<Long> ids = broadcast(3);
+
+        // a previous process (ids below the boot time), a later boot or another node (ahead), garbage
+        for (String lastEventId : List.of("5", Long.toString(ids.get(2) + 1000), "not-a-number")) {
+            RecordingEmitter client = new RecordingEmitter();
+            sse.subscribe(client, lastEventId);
+            assertThat(client.next()).as(lastEventId).isEqualTo(new Sent(ids.get(2), "resync"));
+            client.assertNothingMore();
+        }
+    }
+
+    @Test
+    void resyncAfterABootWithNoEventsYet() throws Exception {
+        sse = new SseService(64, 3600, 16);
+
+        RecordingEmitter client = new RecordingEmitter();
+        sse.subscribe(client, "5");
+
+        assertThat(client.next().name()).isEqualTo("resync");
+    }
+
+    @Test
+    void fullQueueIsReplacedByAResync() throws Exception {
+        sse = new SseService(2, 3600, 16);
+        StuckEmitter slow = new StuckEmitter();
+        RecordingEmitter fast = new RecordingEmitter();
+        sse.subscribe(slow, null);
+        sse.subscribe(fast, null);
+        assertThat(slow.sending.await(5, TimeUnit.SECONDS)).isTrue();
+
+        // the fast client is not held back by the slow one (waited for, as its queue holds only 2 too)
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            sse.broadcast(event(i));
+            ids.add(fast.events(1).get(0).id());
+        }
+
+        slow.release.countDown();
+        assertThat(slow.next()).isEqualTo(new Sent(null, PING));
+        assertThat(slow.next()).isEqualTo(new Sent(ids.get(2), "resync"));
+        slow.assertNothingMore();
+        assertThat(sse.subscriberCount()).isEqualTo(2);
+    }
+
+    @Test
+    void subscriberStuckInASendIsDropped() throws Exception {
+        // a send is stalled after two heartbeat periods
+        sse = new SseService(64, 1, 16);
+        StuckEmitter slow = new StuckEmitter();
+        RecordingEmitter fast = new RecordingEmitter();
+        sse.subscribe(slow, null);
+        sse.subscribe(fast, null);
+        assertThat(slow.sending.await(5, TimeUnit.SECONDS)).isTrue();
+
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (sse.subscriberCount() > 1 && System.currentTimeMillis() < deadline) Thread.sleep(50);
+
+        assertThat(sse.subscriberCount()).isEqualTo(1);
+        assertThat(slow.failure).isNotNull();
+        sse.broadcast(event(1));
+        assertThat(fast.events(1)).hasSize(1);
+        slow.release.countDown();
+    }
+
+    @Test
+    void subscriberWhoseSendFailsIsDropped() throws Exception {
+        sse = new SseService(64, 3600, 16);
+        RecordingEmitter broken = new RecordingEmitter() {
+            @Override
+            public void send(SseEventBuilder builder) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+        };
+        sse.subscribe(broken, null);
+
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (sse.subscriberCount() > 0 && System.currentTimeMillis() < deadline) Thread.sleep(20);
+
+        assertThat(sse.subscriberCount()).isZero();
+        assertThat(broken.failure).isInstanceOf(IOException.class);
+    }
+}
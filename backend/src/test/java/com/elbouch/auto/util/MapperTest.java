@@ -0,0 +1,67 @@
+package com.elbouch.auto.util;
+
+import com.elbouch.auto.dto.ImageDto;
+import com.elbouch.auto.dto.ImageVariantDto;
+import com.elbouch.auto.dto.ProductDto;
+import com.elbouch.auto.entity.Image;
+import com.elbouch.auto.entity.Product;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * A full image replace keeps what the server computed for images already on the product and takes none of it
+ * from the client.
+ */
+class MapperTest {
+
+    @Test
+    void replaceKeepsServerDerivatives() {
+        Product p = new Product();
+        // processed, but without variants (an SVG)
+        Image svg = image(p, "/uploads/logo.svg", 120, 40, null, "[]");
+        Image photo = image(p, "/uploads/photo.jpg", 1600, 1200, "data:image/png;base64,AAAA",
+                "[{\"url\":\"/uploads/photo-320.jpg\",\"width\":320,\"height\":240,\"format\":\"jpeg\"}]");
+        p.getImages().addAll(List.of(svg, photo));
+        List<ImageVariantDto> forged = List.of(new ImageVariantDto("https://example.org/x.jpg", 9999, 9999, "jpeg"));
+
+        Mapper.applyDtoToEntity(dto(List.of(
+                new ImageDto("/uploads/photo.jpg", "Photo", true, 1, 1, "data:forged", forged),
+                new ImageDto("/uploads/logo.svg", "Logo", false, null, null, null, List.of()),
+                new ImageDto("/uploads/new.png", "Nouvelle", false, 800, 600, "data:forged", forged))), p, Map.of(), Map.of());
+
+        assertThat(p.getImages()).hasSize(3);
+        assertThat(p.getImages().get(0)).isSameAs(photo);
+        assertThat(photo.getWidth()).isEqualTo(1600);
+        assertThat(photo.getPlaceholder()).isEqualTo("data:image/png;base64,AAAA");
+        assertThat(photo.getVariantsJson()).contains("photo-320.jpg");
+        assertThat(photo.getAlt()).isEqualTo("Photo");
+        assertThat(photo.isCover()).isTrue();
+        assertThat(p.getImages().get(1)).isSameAs(svg);
+        assertThat(svg.getVariantsJson()).isEqualTo("[]");
+        assertThat(svg.isCover()).isFalse();
+        Image added = p.getImages().get(2);
+        assertThat(added.getWidth()).isNull();
+        assertThat(added.getPlaceholder()).isNull();
+        assertThat(added.getVariantsJson()).isNull();
+    }
+
+    private static Image image(Product p, String url, int width, int height, String placeholder, String variantsJson) {
+        Image img = new Image();
+        img.setProduct(p);
+        img.setUrl(url);
+        img.setCover(false);
+        img.setWidth(width);
+        img.setHeight(height);
+        img.setPlaceholder(placeholder);
+        img.setVariantsJson(variantsJson);
+        return img;
+    }
+
+    private static ProductDto dto(List<ImageDto> images) {
+        return new ProductDto(null, "Produit", "produit", null, null, List.of(), List.of(), true, false, 0, images, Map.of());
+    }
+}
@@ -0,0 +1,41 @@
+package com.elbouch.auto.util;
+
+import com.elbouch.auto.config.RequestSqlStatistics;
+
+/**
+ * Statement counts for tests, e.g. {@code QueryCounts.assertStatements(3, () -> mockMvc.perform(get("/api/v1/products")))}.
+ * Counts what Hibernate prepares on the calling thread, the same counts as the http.server.requests.sql.*
+ * metrics, so it works with MockMvc and direct service calls, not with requests sent to a running server.
+ */
+public final class QueryCounts {
+
+    private QueryCounts() {}
+
+    @FunctionalInterface
+    public interface Action {
+        void run() throws Exception;
+    }
+
+    public record Count(long statements, long rows) {}
+
+    /** Statements run by {@code action}. */
+    public static Count during(Action action) throws Exception {
+        RequestSqlStatistics.begin();
+        RequestSqlStatistics.Counts counts;
+        try {
+            action.run();
+        } finally {
+            counts = RequestSqlStatistics.end();
+        }
+        return new Count(counts.statements(), counts.rows());
+    }
+
+    /** Fails unless {@code action} runs exactly {@code expected} statements. */
+    public static Count assertStatements(long expected, Action action) throws Exception {
+        Count count = during(action);
+        if (count.statements() != expected) {
+            throw new AssertionError("Expected " + expected + " SQL statements but got " + count);
+        }
+        return count;
+    }
+}